@@ -21,6 +21,7 @@ dependencies {
     testImplementation("org.codehaus.groovy:groovy-all:2.5.11")
     testImplementation("org.spockframework:spock-core:1.3-groovy-2.5")
     testImplementation("junit:junit:4.13")
+    jmhImplementation(testFixtures(project))
 }
 
 publishing {
@@ -37,9 +38,29 @@ publishing {
     }
 }
 
+// Benchmarks run on the build JDK by default. To compare JDKs, run them once per JDK with
+// -PjmhJdk=/path/to/jdk, adding -PjmhVector to enable the Vector API on Java 16+ and
+// -PjmhVirtual to run the virtual thread benchmarks on Java 21+: results are written to
+// a file named after the JDK directory.
+val jmhJdk = findProperty("jmhJdk")?.toString()
+val jmhVector = hasProperty("jmhVector")
+val jmhVirtual = hasProperty("jmhVirtual")
+val jmhRun = listOfNotNull(jmhJdk?.let { File(it).name }, "vector".takeIf { jmhVector }, "virtual".takeIf { jmhVirtual })
+
 jmh {
     isIncludeTests = false
-    threads = 8
+    profilers = listOf("gc")
+    resultFormat = "JSON"
+    resultsFile = file("$buildDir/reports/jmh/results${jmhRun.joinToString("") { "-$it" }}.json")
+    if (jmhJdk != null) {
+        jvm = "$jmhJdk/bin/java"
+    }
+    if (jmhVector) {
+        jvmArgsAppend = listOf("--add-modules=jdk.incubator.vector")
+    }
+    if (!jmhVirtual) {
+        exclude = listOf("Virtual$")
+    }
     fork = 4
     timeOnIteration = "3s"
     warmup = "3s"
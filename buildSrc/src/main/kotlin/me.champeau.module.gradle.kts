@@ -2,23 +2,62 @@ plugins {
     `java-library`
 }
 
+val main by sourceSets.getting
+
+// Java 9+ classes: the module descriptor and var handle based implementations
 val java9 by sourceSets.creating {
     java {
         srcDir("src/main/java9")
     }
+    compileClasspath += main.output
+}
+
+// Java 16+ classes, using the incubating Vector API
+val java16 by sourceSets.creating {
+    java {
+        srcDir("src/main/java16")
+    }
+    compileClasspath += main.output
 }
 
 tasks.named("compileJava9Java").configure {
     this as JavaCompile
     sourceCompatibility = "9"
     targetCompatibility = "9"
+    // the module is made of the Java 8 classes, patched with the Java 9 ones
+    options.compilerArgs = listOf("--patch-module", "${project.group}=${main.output.classesDirs.asPath}")
+}
+
+tasks.named("compileJava16Java").configure {
+    this as JavaCompile
+    // the build itself runs on JDKs which can't compile these classes, so they use a toolchain
+    javaCompiler.set(javaToolchains.compilerFor {
+        languageVersion.set(JavaLanguageVersion.of(16))
+    })
+    sourceCompatibility = "16"
+    targetCompatibility = "16"
+    options.compilerArgs = listOf("--add-modules", "jdk.incubator.vector")
+}
+
+fun Jar.multiRelease() {
+    manifest {
+        attributes("Multi-Release" to "true")
+    }
+    from(java9.output) {
+        into("META-INF/versions/9")
+    }
+    from(java16.output) {
+        into("META-INF/versions/16")
+    }
 }
 
 tasks {
     jar {
-        from(java9.output) {
-            into("META-INF/versions/9")
-            include("module-info.class")
-        }
+        multiRelease()
     }
-}
\ No newline at end of file
+}
+
+// benchmarks must run the versioned classes of the JDK they run on
+tasks.matching { it.name == "jmhJar" }.configureEach {
+    (this as Jar).multiRelease()
+}
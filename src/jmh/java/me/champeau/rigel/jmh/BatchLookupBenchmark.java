@@ -0,0 +1,95 @@
+/*
+ * Copyright 2003-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.champeau.rigel.jmh;
+
+import me.champeau.rigel.hash.Hashers;
+import me.champeau.rigel.hash.MPHBuilder;
+import me.champeau.rigel.hash.MinimalPerfectHasher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares batch lookups in a minimal perfect hash function with a loop of single
+ * lookups. Hash functions are built with one bucket per key and uncompressed seeds,
+ * so that the seed table of the largest key set (32MB) doesn't fit in the L3 cache.
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BatchLookupBenchmark {
+    private static final int LOOKUPS = 4096;
+
+    @Param({"100000", "8000000"})
+    private int keyCount;
+
+    @Param({"16", "256"})
+    private int batchSize;
+
+    private MinimalPerfectHasher<String> hashFunction;
+    private String[] lookups;
+    private String[] batch;
+    private int[] out;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        MPHBuilder<String> builder = new MPHBuilder<String>(Hashers.charSequences()).withLoadFactor(1);
+        String[] keys = new String[keyCount];
+        for (int i = 0; i < keyCount; i++) {
+            keys[i] = "key-" + i;
+            builder.add(keys[i]);
+        }
+        hashFunction = builder.build();
+        Random random = new Random(1234);
+        lookups = new String[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++) {
+            lookups[i] = new String(keys[random.nextInt(keyCount)]);
+        }
+        batch = new String[batchSize];
+        out = new int[batchSize];
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOOKUPS)
+    public int scalar() {
+        int sum = 0;
+        for (String key : lookups) {
+            sum += hashFunction.applyAsInt(key);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOOKUPS)
+    public int batch() {
+        int sum = 0;
+        for (int from = 0; from < LOOKUPS; from += batchSize) {
+            System.arraycopy(lookups, from, batch, 0, batchSize);
+            hashFunction.applyAsInt(batch, out);
+            for (int i = 0; i < batchSize; i++) {
+                sum += out[i];
+            }
+        }
+        return sum;
+    }
+}
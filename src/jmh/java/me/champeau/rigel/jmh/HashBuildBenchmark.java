@@ -0,0 +1,98 @@
+/*
+ * Copyright 2003-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.champeau.rigel.jmh;
+
+import me.champeau.rigel.hash.Hashers;
+import me.champeau.rigel.hash.MPHBuilder;
+import me.champeau.rigel.hash.MinimalPerfectHasher;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the build time of minimal perfect hash functions depending on the number
+ * of keys and on the number of first level buckets per key, and reports the size of
+ * the built functions, in bits per key, as a secondary result. Key sets larger than
+ * {@value #KEYS_PER_PARTITION} keys are partitioned, but built on the benchmark thread.
+ */
+@State(Scope.Benchmark)
+@Threads(1)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class HashBuildBenchmark {
+    private static final int KEYS_PER_PARTITION = 10_000;
+
+    @Param({"10000", "100000", "1000000"})
+    private int keyCount;
+
+    @Param({"0.25", "0.5", "1.0"})
+    private double bucketsPerKey;
+
+    @Param({"NONE", "COMPACT"})
+    private MPHBuilder.Compression compression;
+
+    private String[] keys;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        keys = new String[keyCount];
+        for (int i = 0; i < keyCount; i++) {
+            keys[i] = "key-" + i;
+        }
+    }
+
+    @Benchmark
+    public MinimalPerfectHasher<String> build(Footprint footprint) {
+        MPHBuilder<String> builder = new MPHBuilder<String>(Math.max(1, (int) (keyCount * bucketsPerKey)), Hashers.charSequences())
+                .withCompression(compression);
+        for (String key : keys) {
+            builder.add(key);
+        }
+        int partitions = keyCount / KEYS_PER_PARTITION;
+        MinimalPerfectHasher<String> hashFunction = partitions > 1 ? builder.build(partitions, Runnable::run) : builder.build();
+        footprint.bitsPerKey = hashFunction.bitsPerKey();
+        return hashFunction;
+    }
+
+    /**
+     * The size of the last built hash function. Single shot iterations call the
+     * benchmark once, so the reported value isn't summed over several calls.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Footprint {
+        public double bitsPerKey;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            bitsPerKey = 0;
+        }
+    }
+}
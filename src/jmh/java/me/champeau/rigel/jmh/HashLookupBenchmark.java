@@ -0,0 +1,147 @@
+/*
+ * Copyright 2003-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.champeau.rigel.jmh;
+
+import me.champeau.rigel.hash.Hashers;
+import me.champeau.rigel.hash.MPHBuilder;
+import me.champeau.rigel.hash.MinimalPerfectHasher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToIntFunction;
+
+/**
+ * Measures lookups in minimal perfect hash functions, compared with the same keys
+ * in a {@link HashMap} and a {@link HashSet}: throughput with one and several threads,
+ * and the latency distribution of single lookups. Lookup keys are copies of the keys,
+ * in random order, so that lookups don't benefit from identity checks or locality.
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class HashLookupBenchmark {
+    private static final int LOOKUPS = 1024;
+
+    @Param({"100000", "2000000"})
+    private int keyCount;
+
+    @Param({"mph", "mphCompact", "hashMap", "hashSet"})
+    private String structure;
+
+    private String[] lookups;
+    private ToIntFunction<String> lookup;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        String[] keys = new String[keyCount];
+        for (int i = 0; i < keyCount; i++) {
+            keys[i] = "key-" + i;
+        }
+        Random random = new Random(1234);
+        lookups = new String[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++) {
+            lookups[i] = new String(keys[random.nextInt(keyCount)]);
+        }
+        switch (structure) {
+            case "mph":
+                lookup = build(keys, MPHBuilder.Compression.NONE);
+                break;
+            case "mphCompact":
+                lookup = build(keys, MPHBuilder.Compression.COMPACT);
+                break;
+            case "hashMap":
+                Map<String, Integer> map = new HashMap<>();
+                for (int i = 0; i < keyCount; i++) {
+                    map.put(keys[i], i);
+                }
+                lookup = map::get;
+                break;
+            case "hashSet":
+                Set<String> set = new HashSet<>();
+                for (String key : keys) {
+                    set.add(key);
+                }
+                lookup = key -> set.contains(key) ? 1 : 0;
+                break;
+            default:
+                throw new IllegalArgumentException(structure);
+        }
+    }
+
+    private static MinimalPerfectHasher<String> build(String[] keys, MPHBuilder.Compression compression) {
+        MPHBuilder<String> builder = new MPHBuilder<String>(keys.length / 2, Hashers.charSequences()).withCompression(compression);
+        for (String key : keys) {
+            builder.add(key);
+        }
+        return builder.build(Math.max(1, keys.length / 10_000));
+    }
+
+    private int lookupAll() {
+        int sum = 0;
+        for (String key : lookups) {
+            sum += lookup.applyAsInt(key);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @Threads(1)
+    @BenchmarkMode(Mode.Throughput)
+    @OperationsPerInvocation(LOOKUPS)
+    public int throughput() {
+        return lookupAll();
+    }
+
+    @Benchmark
+    @Threads(8)
+    @BenchmarkMode(Mode.Throughput)
+    @OperationsPerInvocation(LOOKUPS)
+    public int throughput8Threads() {
+        return lookupAll();
+    }
+
+    @Benchmark
+    @Threads(1)
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public int latency(Cursor cursor) {
+        return lookup.applyAsInt(lookups[cursor.next()]);
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int position;
+
+        int next() {
+            position = (position + 1) & (LOOKUPS - 1);
+            return position;
+        }
+    }
+}
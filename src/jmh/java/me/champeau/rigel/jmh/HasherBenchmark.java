@@ -0,0 +1,129 @@
+/*
+ * Copyright 2003-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.champeau.rigel.jmh;
+
+import me.champeau.rigel.hash.Hashers;
+import me.champeau.rigel.hash.MPHBuilder;
+import me.champeau.rigel.hash.MPHBuilder.RandomizedHasher;
+import me.champeau.rigel.hash.MinimalPerfectHasher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the built-in hashers with the historical {@link Random} based
+ * string hasher, and the multiply-shift range reduction with a modulo.
+ */
+@State(Scope.Benchmark)
+@Threads(1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class HasherBenchmark {
+    private static final int KEY_COUNT = 50_000;
+    private static final int LOOKUPS = 1024;
+
+    private final RandomizedHasher<String> randomBased = HasherBenchmark::randomHash;
+    private final RandomizedHasher<CharSequence> builtIn = Hashers.charSequences();
+
+    private String[] lookups;
+    private int[] hashes;
+    private MinimalPerfectHasher<String> builtInHash;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        MPHBuilder<String> builder = new MPHBuilder<>(KEY_COUNT / 2, builtIn);
+        for (int i = 0; i < KEY_COUNT; i++) {
+            builder.add("key-" + i);
+        }
+        builtInHash = builder.build();
+        Random random = new Random(1234);
+        lookups = new String[LOOKUPS];
+        hashes = new int[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++) {
+            lookups[i] = "key-" + random.nextInt(KEY_COUNT);
+            hashes[i] = random.nextInt();
+        }
+    }
+
+    private static int randomHash(String str, int seed) {
+        Random rnd = new Random(seed);
+        int i = 0;
+        for (char c : str.toCharArray()) {
+            i = 37 * i + c + rnd.nextInt();
+        }
+        return i;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOOKUPS)
+    public int hashRandomBased() {
+        int sum = 0;
+        for (int i = 0; i < LOOKUPS; i++) {
+            sum += randomBased.hash(lookups[i], i);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOOKUPS)
+    public int hashBuiltIn() {
+        int sum = 0;
+        for (int i = 0; i < LOOKUPS; i++) {
+            sum += builtIn.hash(lookups[i], i);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOOKUPS)
+    public int reduceModulo() {
+        int sum = 0;
+        for (int hash : hashes) {
+            sum += (hash >>> 1) % KEY_COUNT;
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOOKUPS)
+    public int reduceMultiplyShift() {
+        int sum = 0;
+        for (int hash : hashes) {
+            sum += (int) (((hash & 0xFFFFFFFFL) * KEY_COUNT) >>> 32);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOOKUPS)
+    public int lookupBuiltIn() {
+        int sum = 0;
+        for (String key : lookups) {
+            sum += builtInHash.applyAsInt(key);
+        }
+        return sum;
+    }
+}
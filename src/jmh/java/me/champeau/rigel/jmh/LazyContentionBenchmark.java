@@ -0,0 +1,226 @@
+/*
+ * Copyright 2003-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.champeau.rigel.jmh;
+
+import me.champeau.rigel.lazy.Lazy;
+import me.champeau.rigel.lazy.RefreshableLazy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Measures lazy wrappers when they are not initialized yet, unlike {@link LazyReadBenchmark}:
+ * <ul>
+ *     <li>{@link #initializationStorm(InitializationStorm)}: many platform threads call a fresh
+ *     lazy wrapper at the same time</li>
+ *     <li>{@link #initializationStormVirtual(VirtualInitializationStorm)}: the same with virtual
+ *     threads. Virtual threads require Java 21+, so this benchmark only runs with
+ *     {@code -PjmhVirtual}, along with {@code -PjmhJdk} if the build JDK is older</li>
+ *     <li>the {@code invalidation} group: readers read a lazy value which is regularly invalidated,
+ *     either by replacing the lazy wrapper or, for {@code refreshing}, by invalidating it</li>
+ * </ul>
+ * Suppliers can be slow, and the GC profiler reports the allocations of each implementation.
+ */
+public class LazyContentionBenchmark {
+
+    static Lazy.Factory factory(String mode) {
+        switch (mode) {
+            case "unsafe":
+                return Lazy.unsafe();
+            case "locking":
+                return Lazy.locking();
+            case "synchronizing":
+                return Lazy.synchronizing();
+            case "lockFree":
+                return Lazy.lockFree();
+            default:
+                throw new IllegalArgumentException("Unknown lazy mode " + mode);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class InitializationStorm {
+        @Param({"unsafe", "locking", "synchronizing", "lockFree"})
+        private String mode;
+
+        /**
+         * CPU work done by the supplier, in JMH tokens
+         */
+        @Param({"0", "10000"})
+        private long supplierWork;
+
+        @Param({"8", "64"})
+        private int callerCount;
+
+        private Lazy.Factory factory;
+        private Supplier<Long> supplier;
+        private ExecutorService executor;
+
+        @Setup(Level.Trial)
+        public void setup() throws Exception {
+            factory = factory(mode);
+            long work = supplierWork;
+            supplier = () -> {
+                Blackhole.consumeCPU(work);
+                return work;
+            };
+            executor = newExecutor();
+        }
+
+        ExecutorService newExecutor() throws Exception {
+            return Executors.newFixedThreadPool(callerCount);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws InterruptedException {
+            executor.shutdownNow();
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        }
+    }
+
+    public static class VirtualInitializationStorm extends InitializationStorm {
+        @Override
+        ExecutorService newExecutor() throws Exception {
+            // virtual threads are only available on Java 21+, while this code compiles on Java 8
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        }
+    }
+
+    /**
+     * Releases all callers at once on a fresh lazy wrapper, and waits until they all got the value.
+     */
+    @Benchmark
+    @Threads(1)
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void initializationStorm(InitializationStorm storm) throws InterruptedException {
+        storm(storm);
+    }
+
+    @Benchmark
+    @Threads(1)
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void initializationStormVirtual(VirtualInitializationStorm storm) throws InterruptedException {
+        storm(storm);
+    }
+
+    private static void storm(InitializationStorm storm) throws InterruptedException {
+        Lazy<Long> lazy = storm.factory.of(storm.supplier);
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(storm.callerCount);
+        for (int i = 0; i < storm.callerCount; i++) {
+            storm.executor.execute(() -> {
+                try {
+                    start.await();
+                    lazy.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        start.countDown();
+        done.await();
+    }
+
+    @State(Scope.Group)
+    public static class Invalidation {
+        @Param({"locking", "synchronizing", "lockFree", "refreshing"})
+        private String mode;
+
+        @Param({"0", "10000"})
+        private long supplierWork;
+
+        private Supplier<Long> supplier;
+        private Lazy.Factory factory;
+        private ExecutorService refresher;
+        private volatile Lazy<Long> lazy;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            long work = supplierWork;
+            supplier = () -> {
+                Blackhole.consumeCPU(work);
+                return work;
+            };
+            if ("refreshing".equals(mode)) {
+                refresher = Executors.newSingleThreadExecutor();
+                factory = Lazy.refreshing(Duration.ofDays(1), refresher);
+            } else {
+                factory = factory(mode);
+            }
+            lazy = factory.of(supplier);
+        }
+
+        void invalidate() {
+            Lazy<Long> lazy = this.lazy;
+            if (lazy instanceof RefreshableLazy) {
+                ((RefreshableLazy<Long>) lazy).invalidate();
+            } else {
+                this.lazy = factory.of(supplier);
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            if (refresher != null) {
+                refresher.shutdownNow();
+            }
+        }
+    }
+
+    @Benchmark
+    @Group("invalidation")
+    @GroupThreads(7)
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public long read(Invalidation invalidation) {
+        return invalidation.lazy.get();
+    }
+
+    /**
+     * Invalidates the value about every 10 microseconds
+     */
+    @Benchmark
+    @Group("invalidation")
+    @GroupThreads(1)
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void invalidate(Invalidation invalidation) {
+        Blackhole.consumeCPU(5_000);
+        invalidation.invalidate();
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2003-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.champeau.rigel.jmh;
+
+import me.champeau.rigel.lazy.Lazy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures chains of {@link Lazy#map(java.util.function.Function)}, in the style of
+ * {@code Fibo.mappedUse()}, compared to chains of nested unsafe lazy wrappers, which
+ * is what mapping used to create. Run with the gc profiler to compare allocations.
+ */
+@State(Scope.Thread)
+@Threads(1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class LazyMapBenchmark {
+
+    @Param({"unsafe", "locking", "synchronizing", "lockFree"})
+    private String mode;
+
+    @Param({"1", "4", "16"})
+    private int depth;
+
+    private Lazy.Factory factory;
+    private Lazy<Long> mappedChain;
+    private Lazy<Long> nestedChain;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        switch (mode) {
+            case "unsafe":
+                factory = Lazy.unsafe();
+                break;
+            case "locking":
+                factory = Lazy.locking();
+                break;
+            case "synchronizing":
+                factory = Lazy.synchronizing();
+                break;
+            default:
+                factory = Lazy.lockFree();
+        }
+        mappedChain = mapped();
+        mappedChain.get();
+        nestedChain = nested();
+        nestedChain.get();
+    }
+
+    private Lazy<Long> mapped() {
+        Lazy<Long> lazy = factory.of(() -> 1L);
+        for (int i = 0; i < depth; i++) {
+            lazy = lazy.map(v -> v + 1);
+        }
+        return lazy;
+    }
+
+    private Lazy<Long> nested() {
+        Lazy<Long> lazy = factory.of(() -> 1L);
+        for (int i = 0; i < depth; i++) {
+            Lazy<Long> parent = lazy;
+            lazy = Lazy.unsafe().of(() -> parent.get() + 1);
+        }
+        return lazy;
+    }
+
+    @Benchmark
+    public long createAndGetMapped() {
+        return mapped().get();
+    }
+
+    @Benchmark
+    public long createAndGetNested() {
+        return nested().get();
+    }
+
+    @Benchmark
+    public long readMapped() {
+        return mappedChain.get();
+    }
+
+    @Benchmark
+    public long readNested() {
+        return nestedChain.get();
+    }
+}
@@ -16,18 +16,23 @@
 package me.champeau.rigel.jmh;
 
 import me.champeau.rigel.lazy.Lazy;
+import me.champeau.rigel.lazy.LazyListener;
 import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.Scope;
 import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
 import org.openjdk.jmh.infra.Blackhole;
 
 @State(Scope.Benchmark)
+@Threads(8)
 public class LazyReadBenchmark {
 
     private int x = 0;
     private final Lazy<Integer> unsafe = Lazy.unsafe().of(this::x);
     private final Lazy<Integer> locking = Lazy.locking().of(this::x);
     private final Lazy<Integer> sync = Lazy.synchronizing().of(this::x);
+    private final Lazy<Integer> lockFree = Lazy.lockFree().of(this::x);
+    private final Lazy<Integer> instrumented = Lazy.lockFree().instrumented(LazyListener.flightRecorder()).of(this::x);
 
     int x() {
         return ++x;
@@ -53,4 +58,18 @@ public void lockingLazy(Blackhole blackhole) {
         blackhole.consume(apply(locking));
     }
 
+    @Benchmark
+    public void lockFreeLazy(Blackhole blackhole) {
+        blackhole.consume(apply(lockFree));
+    }
+
+    /**
+     * A lock free lazy reporting to flight recorder, to compare with {@link #lockFreeLazy(Blackhole)}
+     * when no recording is in progress.
+     */
+    @Benchmark
+    public void instrumentedLazy(Blackhole blackhole) {
+        blackhole.consume(apply(instrumented));
+    }
+
 }
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2003-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.champeau.rigel.jmh;
+
+import me.champeau.rigel.hash.Hashers;
+import me.champeau.rigel.hash.LongMPHBuilder;
+import me.champeau.rigel.hash.LongMinimalPerfectHasher;
+import me.champeau.rigel.hash.MPHBuilder;
+import me.champeau.rigel.hash.MinimalPerfectHasher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares boxed and primitive long keys, both for building and hashing, and batch
+ * lookups of primitive keys, which are vectorized on Java 16+ when the Vector API
+ * is available.
+ */
+@State(Scope.Benchmark)
+@Threads(1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class LongKeysBenchmark {
+    private static final int LOOKUPS = 1024;
+
+    @Param({"10000", "50000"})
+    private int keyCount;
+
+    private long[] keys;
+    private long[] lookups;
+    private MinimalPerfectHasher<Long> boxed;
+    private LongMinimalPerfectHasher primitive;
+    private final int[] out = new int[LOOKUPS];
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Random random = new Random(1234);
+        keys = new long[keyCount];
+        for (int i = 0; i < keyCount; i++) {
+            keys[i] = random.nextLong();
+        }
+        lookups = new long[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++) {
+            lookups[i] = keys[random.nextInt(keyCount)];
+        }
+        boxed = buildBoxed();
+        primitive = buildPrimitive();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public MinimalPerfectHasher<Long> buildBoxed() {
+        MPHBuilder<Long> builder = new MPHBuilder<>(keyCount / 2, (key, seed) -> Hashers.longs().hash(key, seed));
+        for (long key : keys) {
+            builder.add(key);
+        }
+        return builder.build();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public LongMinimalPerfectHasher buildPrimitive() {
+        LongMPHBuilder builder = new LongMPHBuilder(keyCount / 2, Hashers.longs());
+        for (long key : keys) {
+            builder.add(key);
+        }
+        return builder.build();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOOKUPS)
+    public int lookupBoxed() {
+        int sum = 0;
+        for (long key : lookups) {
+            sum += boxed.applyAsInt(key);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOOKUPS)
+    public int lookupPrimitive() {
+        int sum = 0;
+        for (long key : lookups) {
+            sum += primitive.applyAsInt(key);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOOKUPS)
+    public int lookupPrimitiveBatch() {
+        primitive.applyAsInt(lookups, out);
+        int sum = 0;
+        for (int slot : out) {
+            sum += slot;
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2003-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.champeau.rigel.jmh;
+
+import me.champeau.rigel.fixtures.Jumbles;
+import me.champeau.rigel.hash.Hashers;
+import me.champeau.rigel.hash.MPHBuilder;
+import me.champeau.rigel.hash.StreamingMPHBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the build time of minimal perfect hash functions. Run with the
+ * GC profiler to track allocations of the seed search.
+ *
+ * The {@code buildSignatures} benchmark builds from the same keys, but hashes
+ * each key once into a 64-bit signature: the seed search then scans a flat array
+ * of signatures in bucket order, instead of going back to the key objects.
+ */
+@State(Scope.Benchmark)
+@Threads(1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class MPHBuildBenchmark {
+    private static final int KEYS_PER_PARTITION = 50_000;
+
+    @Param({"jumbles", "10000000"})
+    private String keySet;
+
+    private String[] keys;
+    private int partitions;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        if ("jumbles".equals(keySet)) {
+            List<String> words = new ArrayList<>();
+            Jumbles.forEachWord(new File("/usr/share/dict/words"), word -> words.add(Jumbles.sort(word)));
+            keys = words.toArray(new String[0]);
+        } else {
+            int keyCount = Integer.parseInt(keySet);
+            keys = new String[keyCount];
+            for (int i = 0; i < keyCount; i++) {
+                keys[i] = "key-" + i;
+            }
+        }
+        // large key sets are partitioned so that the seed search converges,
+        // but partitions are built sequentially on the benchmark thread
+        partitions = Math.max(1, keys.length / KEYS_PER_PARTITION);
+    }
+
+    @Benchmark
+    public void build(Blackhole blackhole) {
+        MPHBuilder<String> builder = new MPHBuilder<>(keys.length / 2, Hashers.charSequences());
+        for (String key : keys) {
+            builder.add(key);
+        }
+        if (partitions == 1) {
+            blackhole.consume(builder.build());
+        } else {
+            blackhole.consume(builder.build(partitions, Runnable::run));
+        }
+    }
+
+    @Benchmark
+    public void buildSignatures(Blackhole blackhole) throws IOException {
+        // enough memory to sort all signatures without spilling
+        StreamingMPHBuilder<String> builder = new StreamingMPHBuilder<String>(Hashers.charSequences())
+                .withMemoryBudget(8L * keys.length + (1 << 20));
+        for (String key : keys) {
+            builder.add(key);
+        }
+        blackhole.consume(builder.build());
+    }
+}
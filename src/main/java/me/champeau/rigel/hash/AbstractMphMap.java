@@ -0,0 +1,149 @@
+/*
+ * Copyright 2003-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.champeau.rigel.hash;
+
+import me.champeau.rigel.hash.MPHBuilder.Compression;
+import me.champeau.rigel.hash.MPHBuilder.RandomizedHasher;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Base class for read-only maps backed by a minimal perfect hash function. Values
+ * are stored in dense arrays indexed by the slot of the key, but keys themselves
+ * are not stored. Therefore looking up a key which isn't in the map returns the
+ * value of an arbitrary key, unless the map stores fingerprints of the keys, in
+ * which case most of those lookups are rejected.
+ *
+ * @param <K> the type of the keys
+ */
+abstract class AbstractMphMap<K> {
+    private static final int KEYS_PER_PARTITION = 10_000;
+
+    private final MinimalPerfectHasher<K> hashFunction;
+    private final RandomizedHasher<? super K> hasher;
+    private final Fingerprints fingerprints;
+
+    AbstractMphMap(MinimalPerfectHasher<K> hashFunction, RandomizedHasher<? super K> hasher, Fingerprints fingerprints) {
+        this.hashFunction = hashFunction;
+        this.hasher = hasher;
+        this.fingerprints = fingerprints;
+    }
+
+    /**
+     * @return the slot of the key, or -1 if its fingerprint doesn't match
+     */
+    final int slot(K key) {
+        if (size() == 0) {
+            // the hash function of an empty key set has no seeds to look up
+            return -1;
+        }
+        int slot = hashFunction.applyAsInt(key);
+        if (fingerprints != null && !fingerprints.matches(slot, hasher.hash(key, Fingerprints.FINGERPRINT_SEED))) {
+            return -1;
+        }
+        return slot;
+    }
+
+    /**
+     * Returns false if the key is definitely not in this map. Without fingerprints,
+     * this method returns true for any key, unless the map is empty.
+     *
+     * @param key the key
+     * @return false if the key is not in the map
+     */
+    public boolean mightContain(K key) {
+        return slot(key) >= 0;
+    }
+
+    public int size() {
+        return hashFunction.size();
+    }
+
+    /**
+     * @return the number of bits used per key by the hash function and the fingerprints, not including values
+     */
+    public double bitsPerKey() {
+        double bits = hashFunction.bitsPerKey();
+        if (fingerprints != null && size() > 0) {
+            bits += (double) fingerprints.sizeInBits() / size();
+        }
+        return bits;
+    }
+
+    abstract static class Builder<K, B extends Builder<K, B>> {
+        private final RandomizedHasher<? super K> hasher;
+        final List<K> keys = new ArrayList<>();
+        private Compression compression = Compression.NONE;
+        private int fingerprintBits;
+
+        Builder(RandomizedHasher<? super K> hasher) {
+            this.hasher = hasher;
+        }
+
+        abstract B self();
+
+        /**
+         * Stores a fingerprint of each key, so that lookups of keys which are not in
+         * the map are rejected, except for a false positive rate of 2^-bits.
+         *
+         * @param bits the number of bits of each fingerprint, between 1 and 32
+         * @return this builder
+         */
+        public B withFingerprints(int bits) {
+            if (bits < 1 || bits > 32) {
+                throw new IllegalArgumentException("Fingerprints must be between 1 and 32 bits");
+            }
+            this.fingerprintBits = bits;
+            return self();
+        }
+
+        /**
+         * Selects how the seeds of the hash function are stored.
+         *
+         * @param compression the seed compression
+         * @return this builder
+         */
+        public B withCompression(Compression compression) {
+            this.compression = compression;
+            return self();
+        }
+
+        final MinimalPerfectHasher<K> buildHashFunction() {
+            MPHBuilder<K> builder = new MPHBuilder<K>(hasher).withCompression(compression);
+            for (K key : keys) {
+                builder.add(key);
+            }
+            int partitions = (keys.size() + KEYS_PER_PARTITION - 1) / KEYS_PER_PARTITION;
+            return partitions > 1 ? builder.build(partitions) : builder.build();
+        }
+
+        final Fingerprints buildFingerprints(MinimalPerfectHasher<K> hashFunction) {
+            if (fingerprintBits == 0) {
+                return null;
+            }
+            Fingerprints fingerprints = new Fingerprints(hashFunction.size(), fingerprintBits);
+            for (K key : keys) {
+                fingerprints.set(hashFunction.applyAsInt(key), hasher.hash(key, Fingerprints.FINGERPRINT_SEED));
+            }
+            return fingerprints;
+        }
+
+        final RandomizedHasher<? super K> hasher() {
+            return hasher;
+        }
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright 2003-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.champeau.rigel.hash;
+
+import me.champeau.rigel.hash.MPHBuilder.Compression;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Base class for builders which don't keep keys in memory. Each key is reduced to
+ * a 64-bit signature as soon as it is added, and signatures are sorted externally,
+ * spilling to temporary files when they exceed the memory budget. The sorted
+ * signatures are then read back in a single pass, one partition of about
+ * {@value #KEYS_PER_PARTITION} keys at a time, and the seeds of each partition
+ * are searched independently. Memory usage is therefore bounded by the memory
+ * budget, plus the size of the resulting hash function.
+ *
+ * Equal signatures are only kept once: they are usually duplicate keys, but may
+ * also be distinct keys whose signatures collide, in which case the hash function
+ * has fewer slots than there are distinct keys. The number of discarded signatures
+ * is reported by {@link #stats()}.
+ *
+ * @param <B> the type of the builder
+ */
+abstract class AbstractStreamingMPHBuilder<B extends AbstractStreamingMPHBuilder<B>> {
+    static final int KEYS_PER_PARTITION = 10_000;
+    private static final long DEFAULT_MEMORY_BUDGET = 64L << 20;
+    private static final long MIN_MEMORY_BUDGET = 64L << 10;
+
+    private final int maxFailures = 100_000;
+    private long memoryBudget = DEFAULT_MEMORY_BUDGET;
+    private Path tempDirectory;
+    private Compression compression = Compression.NONE;
+    private SignatureSorter sorter;
+    private BuildStats stats;
+
+    abstract B self();
+
+    /**
+     * Sets the amount of memory used to sort key signatures. Each key uses 8 bytes,
+     * and signatures are spilled to temporary files when this budget is exceeded.
+     * The default is 64MB.
+     *
+     * @param bytes the memory budget, in bytes
+     * @return this builder
+     */
+    public B withMemoryBudget(long bytes) {
+        if (bytes < MIN_MEMORY_BUDGET) {
+            throw new IllegalArgumentException("Memory budget must be at least " + MIN_MEMORY_BUDGET + " bytes");
+        }
+        checkNotStarted();
+        this.memoryBudget = bytes;
+        return self();
+    }
+
+    /**
+     * Sets the directory of the temporary files. By default, the default temporary
+     * file directory is used.
+     *
+     * @param directory the directory of temporary files
+     * @return this builder
+     */
+    public B withTempDirectory(Path directory) {
+        checkNotStarted();
+        this.tempDirectory = directory;
+        return self();
+    }
+
+    /**
+     * Selects how the seeds of the built hash functions are stored.
+     *
+     * @param compression the seed compression
+     * @return this builder
+     */
+    public B withCompression(Compression compression) {
+        this.compression = compression;
+        return self();
+    }
+
+    private void checkNotStarted() {
+        if (sorter != null) {
+            throw new IllegalStateException("Can't change the sort settings after keys were added");
+        }
+    }
+
+    final void addSignature(long signature) throws IOException {
+        if (sorter == null) {
+            sorter = new SignatureSorter(memoryBudget, tempDirectory);
+        }
+        sorter.add(signature);
+    }
+
+    /**
+     * Builds the table from the signatures added so far, then deletes the temporary
+     * files and resets the builder.
+     */
+    final SignatureTable buildTable() throws IOException {
+        long start = System.nanoTime();
+        SignatureSorter sorter = this.sorter == null ? new SignatureSorter(MIN_MEMORY_BUDGET, tempDirectory) : this.sorter;
+        this.sorter = null;
+        long count = sorter.count();
+        int partitions = (int) Math.min(Integer.MAX_VALUE, Math.max(1, (count + KEYS_PER_PARTITION - 1) / KEYS_PER_PARTITION));
+        int[] offsets = new int[partitions + 1];
+        int[] bucketOffsets = new int[partitions + 1];
+        SeedTable[] seeds = new SeedTable[partitions];
+        BuildStats[] partitionStats = new BuildStats[partitions];
+        long discarded = 0;
+        long[] keys = new long[2 * KEYS_PER_PARTITION];
+        int size = 0;
+        int partition = 0;
+        try (SignatureSorter.Cursor cursor = sorter.sort()) {
+            while (cursor.hasNext()) {
+                long signature = cursor.next();
+                if (size > 0 && keys[size - 1] == signature) {
+                    // duplicate key, or a signature collision
+                    discarded++;
+                    continue;
+                }
+                int p = SignatureTable.partition(signature, partitions);
+                while (partition < p) {
+                    buildPartition(partition++, keys, size, offsets, bucketOffsets, seeds, partitionStats);
+                    size = 0;
+                }
+                if (size == keys.length) {
+                    keys = Arrays.copyOf(keys, 2 * size);
+                }
+                keys[size++] = signature;
+            }
+        }
+        while (partition < partitions) {
+            buildPartition(partition++, keys, size, offsets, bucketOffsets, seeds, partitionStats);
+            size = 0;
+        }
+        stats = BuildStats.combine(partitionStats, System.nanoTime() - start, discarded);
+        return new SignatureTable(offsets, bucketOffsets, seeds);
+    }
+
+    private void buildPartition(int partition, long[] keys, int size, int[] offsets, int[] bucketOffsets, SeedTable[] seeds, BuildStats[] partitionStats) {
+        if ((long) offsets[partition] + size > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Too many keys for a minimal perfect hash function");
+        }
+        offsets[partition + 1] = offsets[partition] + size;
+        int buckets = size / 2 + 1;
+        bucketOffsets[partition + 1] = bucketOffsets[partition] + buckets;
+        int[] bucketOfKey = new int[size];
+        for (int i = 0; i < size; i++) {
+            bucketOfKey[i] = SignatureTable.bucket(keys[i], buckets);
+        }
+        int[] partitionSeeds = SeedSearch.findSeeds(buckets, bucketOfKey, keys, (key, seed) -> SignatureTable.position(key, seed, size), maxFailures);
+        seeds[partition] = compression.encode(partitionSeeds);
+        partitionStats[partition] = BuildStats.of(size, 1, partitionSeeds, 0);
+    }
+
+    /**
+     * Returns statistics about the last build, including the number of signatures
+     * which were discarded because they were equal to the signature of another key.
+     *
+     * @return the statistics of the last build, or null if nothing was built yet
+     */
+    public BuildStats stats() {
+        return stats;
+    }
+}
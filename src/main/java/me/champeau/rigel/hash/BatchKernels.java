@@ -0,0 +1,58 @@
+/*
+ * Copyright 2003-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.champeau.rigel.hash;
+
+/**
+ * The loops of batch lookups and builds which don't depend on the hasher: first level
+ * hashing of primitive keys and seed loading. This is the portable version, a version
+ * using the Vector API is used on Java 16+ when the {@code jdk.incubator.vector}
+ * module is available.
+ */
+final class BatchKernels {
+    private BatchKernels() {
+    }
+
+    /**
+     * Computes the first level bucket of a range of long keys.
+     *
+     * @see LongMPHBuilder#firstLevelHash(long, int, int)
+     */
+    static void firstLevelHashes(long[] keys, int from, int to, int firstLevelSize, int firstLevelSeed, int[] out) {
+        for (int i = from; i < to; i++) {
+            out[i] = LongMPHBuilder.firstLevelHash(keys[i], firstLevelSize, firstLevelSeed);
+        }
+    }
+
+    /**
+     * Computes the first level bucket of a range of int keys.
+     *
+     * @see IntMPHBuilder#firstLevelHash(int, int, int)
+     */
+    static void firstLevelHashes(int[] keys, int from, int to, int firstLevelSize, int firstLevelSeed, int[] out) {
+        for (int i = from; i < to; i++) {
+            out[i] = IntMPHBuilder.firstLevelHash(keys[i], firstLevelSize, firstLevelSeed);
+        }
+    }
+
+    /**
+     * Replaces a range of indices with the values of a table at those indices.
+     */
+    static void gather(int[] table, int[] indices, int from, int to) {
+        for (int i = from; i < to; i++) {
+            indices[i] = table[indices[i]];
+        }
+    }
+}
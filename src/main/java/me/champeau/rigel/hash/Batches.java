@@ -0,0 +1,40 @@
+/*
+ * Copyright 2003-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.champeau.rigel.hash;
+
+/**
+ * Support for the batch lookup methods of minimal perfect hash functions.
+ *
+ * Batch lookups are processed in blocks: the first level buckets of all keys
+ * of a block are computed first, then the seeds of the block are loaded, then
+ * the second level hashes are computed. Seed loads of a block don't depend on
+ * each other, so the CPU can have several cache misses in flight instead of
+ * waiting for each of them, while the keys of a block stay in the L1 cache
+ * between passes. The output array is used to store the intermediate buckets
+ * and seeds, so batch lookups don't allocate.
+ */
+final class Batches {
+    static final int BLOCK_SIZE = 64;
+
+    private Batches() {
+    }
+
+    static void checkLength(int keys, int out) {
+        if (out < keys) {
+            throw new IllegalArgumentException("Output array is too small: " + keys + " keys but " + out + " slots");
+        }
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2003-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.champeau.rigel.hash;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+/**
+ * Statistics about the build of a minimal perfect hash function, as reported by
+ * {@link MPHBuilder#stats()} or {@link StreamingMPHBuilder#stats()}. Seeds are counted
+ * for non empty buckets only, the seed of a bucket being the number of trials it took
+ * to place its keys.
+ */
+public final class BuildStats {
+    private final int keys;
+    private final int buckets;
+    private final int attempts;
+    private final long seedTrials;
+    private final int maxSeed;
+    private final long[] seedBits;
+    private final long buildTimeNanos;
+    private final long discardedSignatures;
+
+    private BuildStats(int keys, int buckets, int attempts, long seedTrials, int maxSeed, long[] seedBits, long buildTimeNanos, long discardedSignatures) {
+        this.keys = keys;
+        this.buckets = buckets;
+        this.attempts = attempts;
+        this.seedTrials = seedTrials;
+        this.maxSeed = maxSeed;
+        this.seedBits = seedBits;
+        this.buildTimeNanos = buildTimeNanos;
+        this.discardedSignatures = discardedSignatures;
+    }
+
+    static BuildStats of(int keys, int attempts, int[] seeds, long buildTimeNanos) {
+        long trials = 0;
+        int max = 0;
+        long[] bits = new long[33];
+        for (int seed : seeds) {
+            if (seed != 0) {
+                trials += seed;
+                max = Math.max(max, seed);
+                bits[32 - Integer.numberOfLeadingZeros(seed)]++;
+            }
+        }
+        return new BuildStats(keys, seeds.length, attempts, trials, max, bits, buildTimeNanos, 0);
+    }
+
+    static BuildStats combine(BuildStats[] partitions, long buildTimeNanos) {
+        return combine(partitions, buildTimeNanos, 0);
+    }
+
+    static BuildStats combine(BuildStats[] partitions, long buildTimeNanos, long discardedSignatures) {
+        int keys = 0;
+        int buckets = 0;
+        int attempts = 0;
+        long trials = 0;
+        int max = 0;
+        long[] bits = new long[33];
+        for (BuildStats stats : partitions) {
+            keys += stats.keys;
+            buckets += stats.buckets;
+            attempts = Math.max(attempts, stats.attempts);
+            trials += stats.seedTrials;
+            max = Math.max(max, stats.maxSeed);
+            for (int i = 0; i < bits.length; i++) {
+                bits[i] += stats.seedBits[i];
+            }
+        }
+        return new BuildStats(keys, buckets, attempts, trials, max, bits, buildTimeNanos, discardedSignatures);
+    }
+
+    /**
+     * @return the number of hashed keys
+     */
+    public int keys() {
+        return keys;
+    }
+
+    /**
+     * @return the number of first level buckets of the hash function
+     */
+    public int buckets() {
+        return buckets;
+    }
+
+    /**
+     * Returns the number of first level hash functions which were tried before
+     * all buckets could be placed. For partitioned hash functions, this is the
+     * number of attempts of the hardest partition.
+     *
+     * @return the number of first level attempts, 1 if the first one succeeded
+     */
+    public int attempts() {
+        return attempts;
+    }
+
+    /**
+     * @return the total number of seeds tried by the successful attempt
+     */
+    public long seedTrials() {
+        return seedTrials;
+    }
+
+    /**
+     * @return the largest seed
+     */
+    public int maxSeed() {
+        return maxSeed;
+    }
+
+    /**
+     * Returns the distribution of seeds by bit length: the value at index {@code i}
+     * is the number of buckets whose seed needs exactly {@code i} bits.
+     *
+     * @return the number of seeds per bit length, indexed from 0 to 32
+     */
+    public long[] seedBitLengths() {
+        return seedBits.clone();
+    }
+
+    /**
+     * @return the wall clock time of the build
+     */
+    public Duration buildTime() {
+        return Duration.ofNanos(buildTimeNanos);
+    }
+
+    /**
+     * Returns the number of added keys which were discarded by a streaming builder
+     * because their signature was equal to the signature of another key. This counts
+     * duplicate keys, but also distinct keys whose 64-bit signatures collide, which
+     * can't be told apart from duplicates. It is always 0 for builders which keep
+     * their keys in memory.
+     *
+     * @return the number of discarded signatures
+     */
+    public long discardedSignatures() {
+        return discardedSignatures;
+    }
+
+    @Override
+    public String toString() {
+        int last = seedBits.length - 1;
+        while (last > 0 && seedBits[last] == 0) {
+            last--;
+        }
+        return "BuildStats{keys=" + keys +
+                ", buckets=" + buckets +
+                ", attempts=" + attempts +
+                ", seedTrials=" + seedTrials +
+                ", maxSeed=" + maxSeed +
+                ", seedBitLengths=" + Arrays.toString(Arrays.copyOf(seedBits, last + 1)) +
+                ", buildTime=" + buildTime() +
+                ", discardedSignatures=" + discardedSignatures +
+                '}';
+    }
+}
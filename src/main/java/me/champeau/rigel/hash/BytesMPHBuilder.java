@@ -0,0 +1,265 @@
+/*
+ * Copyright 2003-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.champeau.rigel.hash;
+
+import me.champeau.rigel.hash.MPHBuilder.Compression;
+
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+import static me.champeau.rigel.hash.MPHBuilder.AUTO;
+import static me.champeau.rigel.hash.MPHBuilder.DEFAULT_LOAD_FACTOR;
+import static me.champeau.rigel.hash.MPHBuilder.HASH_CODE_FIRST_LEVEL;
+import static me.champeau.rigel.hash.MPHBuilder.PARTITION_SEED;
+
+/**
+ * A {@link MPHBuilder} specialized for byte array keys, compared by content. All
+ * keys are copied into a single flat array, so that building doesn't require one
+ * object per key and hashing works on slices of that array.
+ *
+ * Like {@link MPHBuilder}, builders created without a number of buckets size the
+ * first level from the number of keys and retry failed builds with a seeded first
+ * level, and large key sets can be built in partitions.
+ */
+public class BytesMPHBuilder {
+    private final int firstLevelSize;
+    private final BytesRandomizedHasher hasher;
+    private Compression compression = Compression.NONE;
+    private double loadFactor = DEFAULT_LOAD_FACTOR;
+    private BuildStats stats;
+    // concatenated keys in insertion order, key i spanning offsets[i] to offsets[i + 1]
+    private byte[] data = new byte[256];
+    private int[] offsets = new int[17];
+    // open addressing index of key positions + 1 to reject duplicates
+    private int[] index = new int[32];
+    private int size;
+
+    public BytesMPHBuilder(int firstLevelSize, BytesRandomizedHasher hasher) {
+        this.firstLevelSize = MPHBuilder.checkFirstLevelSize(firstLevelSize);
+        this.hasher = hasher;
+    }
+
+    /**
+     * Creates a builder which chooses the number of first level buckets from the
+     * number of keys, and retries failed builds instead of giving up.
+     *
+     * @param hasher the hasher of keys
+     * @see MPHBuilder#MPHBuilder(MPHBuilder.RandomizedHasher)
+     */
+    public BytesMPHBuilder(BytesRandomizedHasher hasher) {
+        this.firstLevelSize = AUTO;
+        this.hasher = hasher;
+    }
+
+    /**
+     * Sets the average number of keys per first level bucket of automatically sized
+     * builders.
+     *
+     * @param keysPerBucket the average number of keys per bucket, at least 1
+     * @return this builder
+     * @see MPHBuilder#withLoadFactor(double)
+     */
+    public BytesMPHBuilder withLoadFactor(double keysPerBucket) {
+        this.loadFactor = MPHBuilder.checkLoadFactor(firstLevelSize, keysPerBucket);
+        return this;
+    }
+
+    /**
+     * Selects how the seeds of the built hash functions are stored.
+     *
+     * @param compression the seed compression
+     * @return this builder
+     */
+    public BytesMPHBuilder withCompression(Compression compression) {
+        this.compression = compression;
+        return this;
+    }
+
+    public void add(byte[] key) {
+        add(key, 0, key.length);
+    }
+
+    public void add(byte[] key, int offset, int length) {
+        int mask = index.length - 1;
+        int slot = indexHash(key, offset, length) & mask;
+        for (int k; (k = index[slot]) != 0; slot = (slot + 1) & mask) {
+            if (sameKey(k - 1, key, offset, length)) {
+                return;
+            }
+        }
+        int end = offsets[size];
+        if (end + length > data.length) {
+            data = Arrays.copyOf(data, Math.max(2 * data.length, end + length));
+        }
+        System.arraycopy(key, offset, data, end, length);
+        if (size + 1 == offsets.length) {
+            offsets = Arrays.copyOf(offsets, 2 * offsets.length);
+        }
+        offsets[++size] = end + length;
+        index[slot] = size;
+        if (2 * size > index.length) {
+            growIndex();
+        }
+    }
+
+    private boolean sameKey(int i, byte[] key, int offset, int length) {
+        int start = offsets[i];
+        if (offsets[i + 1] - start != length) {
+            return false;
+        }
+        for (int j = 0; j < length; j++) {
+            if (data[start + j] != key[offset + j]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void growIndex() {
+        int[] newIndex = new int[2 * index.length];
+        int mask = newIndex.length - 1;
+        for (int i = 0; i < size; i++) {
+            int slot = indexHash(data, offsets[i], offsets[i + 1] - offsets[i]) & mask;
+            while (newIndex[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            newIndex[slot] = i + 1;
+        }
+        index = newIndex;
+    }
+
+    private static int indexHash(byte[] data, int offset, int length) {
+        int h = hashCode(data, offset, length) * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Same as {@link Arrays#hashCode(byte[])} on a slice
+     */
+    private static int hashCode(byte[] data, int offset, int length) {
+        int h = 1;
+        for (int i = offset; i < offset + length; i++) {
+            h = 31 * h + data[i];
+        }
+        return h;
+    }
+
+    static int firstLevelHash(byte[] data, int offset, int length, BytesRandomizedHasher hasher, int firstLevelSize, int firstLevelSeed) {
+        if (firstLevelSeed == HASH_CODE_FIRST_LEVEL) {
+            return Hashers.reduce(Hashers.mix(hashCode(data, offset, length)), firstLevelSize);
+        }
+        return Hashers.reduce(hasher.hash(data, offset, length, firstLevelSeed), firstLevelSize);
+    }
+
+    static int secondLevelHash(byte[] data, int offset, int length, BytesRandomizedHasher hasher, int size, int seed) {
+        return Hashers.reduce(hasher.hash(data, offset, length, seed), size);
+    }
+
+    static int partitionHash(byte[] data, int offset, int length, BytesRandomizedHasher hasher, int partitions) {
+        return Hashers.reduce(hasher.hash(data, offset, length, PARTITION_SEED), partitions);
+    }
+
+    /**
+     * Builds a partitioned hash function using the common fork join pool.
+     *
+     * @param partitions the number of partitions
+     * @return a minimal perfect hash function
+     * @see #build(int, Executor)
+     */
+    public BytesMinimalPerfectHasher build(int partitions) {
+        return build(partitions, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Builds a partitioned hash function, the partitions being built independently
+     * on the supplied executor.
+     *
+     * @param partitions the number of partitions
+     * @param executor the executor building the partitions
+     * @return a minimal perfect hash function
+     * @see MPHBuilder#build(int, Executor)
+     */
+    public BytesMinimalPerfectHasher build(int partitions, Executor executor) {
+        if (partitions < 1) {
+            throw new IllegalArgumentException("Number of partitions must be positive");
+        }
+        long start = System.nanoTime();
+        int partitionLevelSize = Math.max(1, (firstLevelSize + partitions - 1) / partitions);
+        BytesMPHBuilder[] builders = new BytesMPHBuilder[partitions];
+        for (int i = 0; i < partitions; i++) {
+            builders[i] = firstLevelSize == AUTO
+                    ? new BytesMPHBuilder(hasher).withLoadFactor(loadFactor)
+                    : new BytesMPHBuilder(partitionLevelSize, hasher);
+            builders[i].withCompression(compression);
+        }
+        for (int i = 0; i < size; i++) {
+            int offset = offsets[i];
+            int length = offsets[i + 1] - offset;
+            builders[partitionHash(data, offset, length, hasher, partitions)].add(data, offset, length);
+        }
+        BytesMinimalPerfectHasher[] hashers = new BytesMinimalPerfectHasher[partitions];
+        MPHBuilder.buildPartitions(i -> builders[i].build(), hashers, executor);
+        BuildStats[] partitionStats = new BuildStats[partitions];
+        for (int i = 0; i < partitions; i++) {
+            partitionStats[i] = builders[i].stats;
+        }
+        stats = BuildStats.combine(partitionStats, System.nanoTime() - start);
+        return new BytesPartitionedHasher(hasher, hashers);
+    }
+
+    public BytesMinimalPerfectHasher build() {
+        long start = System.nanoTime();
+        int size = this.size;
+        byte[] data = this.data;
+        int[] offsets = this.offsets;
+        int[] bucketOfKey = new int[size];
+        SeedSearch.Positions positions = (key, seed) ->
+                secondLevelHash(data, offsets[key], offsets[key + 1] - offsets[key], hasher, size, seed);
+        if (firstLevelSize == AUTO) {
+            return MPHBuilder.buildAdaptive(size, loadFactor, (buckets, firstLevelSeed, failures, attempts) -> {
+                for (int i = 0; i < size; i++) {
+                    bucketOfKey[i] = firstLevelHash(data, offsets[i], offsets[i + 1] - offsets[i], hasher, buckets, firstLevelSeed);
+                }
+                int[] seeds = SeedSearch.tryFindSeeds(buckets, bucketOfKey, positions, failures);
+                if (seeds == null) {
+                    return null;
+                }
+                stats = BuildStats.of(size, attempts, seeds, System.nanoTime() - start);
+                return new BytesMPHHash(hasher, buckets, firstLevelSeed, size, compression.encode(seeds));
+            });
+        }
+        for (int i = 0; i < size; i++) {
+            bucketOfKey[i] = firstLevelHash(data, offsets[i], offsets[i + 1] - offsets[i], hasher, firstLevelSize, HASH_CODE_FIRST_LEVEL);
+        }
+        int[] seeds = SeedSearch.findSeeds(firstLevelSize, bucketOfKey, positions, MPHBuilder.failureBudget(size));
+        stats = BuildStats.of(size, 1, seeds, System.nanoTime() - start);
+        return new BytesMPHHash(hasher, firstLevelSize, HASH_CODE_FIRST_LEVEL, size, compression.encode(seeds));
+    }
+
+    /**
+     * Returns statistics about the last hash function built by this builder.
+     *
+     * @return the statistics of the last build, or null if nothing was built yet
+     */
+    public BuildStats stats() {
+        return stats;
+    }
+
+    public interface BytesRandomizedHasher {
+        int hash(byte[] data, int offset, int length, int seed);
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2003-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.champeau.rigel.hash;
+
+import me.champeau.rigel.hash.BytesMPHBuilder.BytesRandomizedHasher;
+
+import static me.champeau.rigel.hash.BytesMPHBuilder.firstLevelHash;
+import static me.champeau.rigel.hash.BytesMPHBuilder.secondLevelHash;
+
+/**
+ * The {@link MPHHash} counterpart for byte array keys. The first level uses the
+ * content hash code of the key, unless the hash function was built with a first
+ * level seed.
+ */
+final class BytesMPHHash implements BytesMinimalPerfectHasher {
+    private final BytesRandomizedHasher hasher;
+    private final int primarySize;
+    private final int firstLevelSeed;
+    private final int totalSize;
+    private final SeedTable seeds;
+
+    BytesMPHHash(BytesRandomizedHasher hasher, int primarySize, int firstLevelSeed, int totalSize, SeedTable seeds) {
+        this.hasher = hasher;
+        this.primarySize = primarySize;
+        this.firstLevelSeed = firstLevelSeed;
+        this.totalSize = totalSize;
+        this.seeds = seeds;
+    }
+
+    @Override
+    public int applyAsInt(byte[] data, int offset, int length) {
+        int p = firstLevelHash(data, offset, length, hasher, primarySize, firstLevelSeed);
+        return secondLevelHash(data, offset, length, hasher, totalSize, seeds.seed(p));
+    }
+
+    @Override
+    public void applyAsInt(byte[][] keys, int[] out) {
+        Batches.checkLength(keys.length, out.length);
+        for (int from = 0; from < keys.length; from += Batches.BLOCK_SIZE) {
+            int to = Math.min(keys.length, from + Batches.BLOCK_SIZE);
+            for (int i = from; i < to; i++) {
+                byte[] key = keys[i];
+                out[i] = firstLevelHash(key, 0, key.length, hasher, primarySize, firstLevelSeed);
+            }
+            seeds.seeds(out, from, to);
+            for (int i = from; i < to; i++) {
+                byte[] key = keys[i];
+                out[i] = secondLevelHash(key, 0, key.length, hasher, totalSize, out[i]);
+            }
+        }
+    }
+
+    int primarySize() {
+        return primarySize;
+    }
+
+    int firstLevelSeed() {
+        return firstLevelSeed;
+    }
+
+    SeedTable seeds() {
+        return seeds;
+    }
+
+    @Override
+    public double bitsPerKey() {
+        return totalSize == 0 ? 0 : (double) seeds.sizeInBits() / totalSize;
+    }
+
+    @Override
+    public String toString() {
+        return "Minimal Perfect Hash function for " + totalSize + " byte array keys";
+    }
+
+    @Override
+    public int size() {
+        return totalSize;
+    }
+}
@@ -16,7 +16,16 @@
 package me.champeau.rigel.hash;
 
 /**
- * A dummy class so that the Java compiler is happy
+ * A minimal perfect hash function for byte array keys. Keys are compared by
+ * content and can be hashed from a slice of a larger array, without copying.
+ *
+ * @see BytesMPHBuilder
  */
-class Beacon {
+public interface BytesMinimalPerfectHasher extends MinimalPerfectHasher<byte[]> {
+    int applyAsInt(byte[] data, int offset, int length);
+
+    @Override
+    default int applyAsInt(byte[] key) {
+        return applyAsInt(key, 0, key.length);
+    }
 }
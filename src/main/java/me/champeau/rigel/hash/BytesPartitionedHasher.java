@@ -0,0 +1,74 @@
+/*
+ * Copyright 2003-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.champeau.rigel.hash;
+
+import me.champeau.rigel.hash.BytesMPHBuilder.BytesRandomizedHasher;
+
+/**
+ * The {@link PartitionedHasher} counterpart for byte array keys.
+ */
+final class BytesPartitionedHasher implements BytesMinimalPerfectHasher {
+    private final BytesRandomizedHasher hasher;
+    private final BytesMinimalPerfectHasher[] partitions;
+    private final int[] offsets;
+
+    BytesPartitionedHasher(BytesRandomizedHasher hasher, BytesMinimalPerfectHasher[] partitions) {
+        this.hasher = hasher;
+        this.partitions = partitions;
+        this.offsets = new int[partitions.length + 1];
+        for (int i = 0; i < partitions.length; i++) {
+            offsets[i + 1] = offsets[i] + partitions[i].size();
+        }
+    }
+
+    @Override
+    public int applyAsInt(byte[] data, int offset, int length) {
+        int p = BytesMPHBuilder.partitionHash(data, offset, length, hasher, partitions.length);
+        int first = offsets[p];
+        if (offsets[p + 1] == first) {
+            // empty partition, only reachable for keys which were not in the key set
+            return 0;
+        }
+        return first + partitions[p].applyAsInt(data, offset, length);
+    }
+
+    @Override
+    public int size() {
+        return offsets[partitions.length];
+    }
+
+    @Override
+    public double bitsPerKey() {
+        int size = size();
+        if (size == 0) {
+            return 0;
+        }
+        double bits = 32d * offsets.length;
+        for (BytesMinimalPerfectHasher partition : partitions) {
+            bits += partition.bitsPerKey() * partition.size();
+        }
+        return bits / size;
+    }
+
+    BytesMinimalPerfectHasher[] partitions() {
+        return partitions;
+    }
+
+    @Override
+    public String toString() {
+        return "Minimal Perfect Hash function for " + size() + " byte array keys in " + partitions.length + " partitions";
+    }
+}
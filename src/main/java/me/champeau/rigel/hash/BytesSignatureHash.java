@@ -0,0 +1,55 @@
+/*
+ * Copyright 2003-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.champeau.rigel.hash;
+
+import me.champeau.rigel.hash.BytesMPHBuilder.BytesRandomizedHasher;
+
+/**
+ * The {@link SignatureHash} counterpart for byte array keys.
+ */
+final class BytesSignatureHash implements BytesMinimalPerfectHasher {
+    private final BytesRandomizedHasher hasher;
+    private final SignatureTable table;
+
+    BytesSignatureHash(BytesRandomizedHasher hasher, SignatureTable table) {
+        this.hasher = hasher;
+        this.table = table;
+    }
+
+    @Override
+    public int applyAsInt(byte[] data, int offset, int length) {
+        return table.slot(StreamingBytesMPHBuilder.signature(data, offset, length, hasher));
+    }
+
+    @Override
+    public int size() {
+        return table.size();
+    }
+
+    @Override
+    public double bitsPerKey() {
+        return table.bitsPerKey();
+    }
+
+    SignatureTable table() {
+        return table;
+    }
+
+    @Override
+    public String toString() {
+        return "Minimal Perfect Hash function for " + size() + " byte array keys in " + table.partitions() + " partitions";
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2003-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.champeau.rigel.hash;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A compressed seed table. Most seeds found by the displacement search are small,
+ * so seeds are bit-packed using a fixed width which is chosen to minimize the total
+ * size of the table. Seeds which do not fit in that width are marked with an escape
+ * value and stored in a sorted overflow table.
+ */
+final class CompactSeedTable implements SeedTable {
+    private final int width;
+    private final long escape;
+    private final long[] bits;
+    private final int[] overflowBuckets;
+    private final int[] overflowSeeds;
+
+    private CompactSeedTable(int width, long[] bits, int[] overflowBuckets, int[] overflowSeeds) {
+        this.width = width;
+        this.escape = (1L << width) - 1;
+        this.bits = bits;
+        this.overflowBuckets = overflowBuckets;
+        this.overflowSeeds = overflowSeeds;
+    }
+
+    static CompactSeedTable of(int[] seeds) {
+        int width = bestWidth(seeds);
+        long escape = (1L << width) - 1;
+        long[] bits = PackedBits.allocate(seeds.length, width);
+        int overflow = 0;
+        for (int seed : seeds) {
+            if (seed >= escape) {
+                overflow++;
+            }
+        }
+        int[] overflowBuckets = new int[overflow];
+        int[] overflowSeeds = new int[overflow];
+        overflow = 0;
+        for (int i = 0; i < seeds.length; i++) {
+            long value = seeds[i];
+            if (value >= escape) {
+                overflowBuckets[overflow] = i;
+                overflowSeeds[overflow++] = seeds[i];
+                value = escape;
+            }
+            PackedBits.write(bits, i, width, value);
+        }
+        return new CompactSeedTable(width, bits, overflowBuckets, overflowSeeds);
+    }
+
+    /**
+     * Computes the width which minimizes the size of the table, given that
+     * each overflowing seed costs 64 bits (bucket index and seed).
+     */
+    private static int bestWidth(int[] seeds) {
+        // number of seeds by bit length, and number of seeds which are all ones for a given bit length
+        long[] lengths = new long[33];
+        long[] allOnes = new long[33];
+        for (int seed : seeds) {
+            int length = 32 - Integer.numberOfLeadingZeros(seed);
+            lengths[length]++;
+            if ((seed & (seed + 1)) == 0) {
+                allOnes[length]++;
+            }
+        }
+        long larger = seeds.length - lengths[0];
+        int best = 1;
+        long bestSize = Long.MAX_VALUE;
+        for (int width = 1; width < 32; width++) {
+            larger -= lengths[width];
+            long overflow = larger + allOnes[width];
+            long size = width * (long) seeds.length + 64 * overflow;
+            if (size < bestSize) {
+                bestSize = size;
+                best = width;
+            }
+        }
+        return best;
+    }
+
+    @Override
+    public int seed(int bucket) {
+        long value = PackedBits.read(bits, bucket, width, escape);
+        if (value != escape) {
+            return (int) value;
+        }
+        return overflowSeeds[Arrays.binarySearch(overflowBuckets, bucket)];
+    }
+
+    @Override
+    public long sizeInBits() {
+        return 64L * bits.length + 64L * overflowBuckets.length;
+    }
+
+    @Override
+    public void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(MPHFile.COMPACT_SEEDS);
+        out.writeInt(width);
+        out.writeInt(bits.length);
+        out.writeInt(overflowBuckets.length);
+        MPHFile.align(out);
+        for (long word : bits) {
+            out.writeLong(word);
+        }
+        for (int bucket : overflowBuckets) {
+            out.writeInt(bucket);
+        }
+        for (int seed : overflowSeeds) {
+            out.writeInt(seed);
+        }
+    }
+}
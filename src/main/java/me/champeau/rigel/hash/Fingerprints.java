@@ -0,0 +1,56 @@
+/*
+ * Copyright 2003-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.champeau.rigel.hash;
+
+/**
+ * A packed array of k-bit key fingerprints, indexed by slot. A fingerprint is
+ * made of the high bits of a hash of the key, using a dedicated seed.
+ */
+final class Fingerprints {
+    static final int FINGERPRINT_SEED = -2;
+    private final int bits;
+    private final long mask;
+    private final long[] data;
+
+    Fingerprints(int size, int bits) {
+        if (bits < 1 || bits > 32) {
+            throw new IllegalArgumentException("Fingerprints must be between 1 and 32 bits");
+        }
+        this.bits = bits;
+        this.mask = (1L << bits) - 1;
+        this.data = PackedBits.allocate(size, bits);
+    }
+
+    void set(int slot, int hash) {
+        PackedBits.write(data, slot, bits, fingerprint(hash));
+    }
+
+    boolean matches(int slot, int hash) {
+        return PackedBits.read(data, slot, bits, mask) == fingerprint(hash);
+    }
+
+    private long fingerprint(int hash) {
+        return (hash & 0xFFFFFFFFL) >>> (32 - bits);
+    }
+
+    int bits() {
+        return bits;
+    }
+
+    long sizeInBits() {
+        return 64L * data.length;
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2003-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.champeau.rigel.hash;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+
+/**
+ * An off-heap store of fixed width records, one per slot. Records are zeroed when
+ * the store is allocated, and can be written in any order. Primitive fields of a
+ * record can be read directly, without creating a view: offsets are relative to the
+ * start of the record and must be within the record width.
+ */
+public final class FixedWidthValues extends OffHeapValues {
+    private final ByteBuffer buffer;
+    private final int slots;
+    private final int width;
+
+    private FixedWidthValues(ByteBuffer buffer, int slots, int width) {
+        this.buffer = buffer;
+        this.slots = slots;
+        this.width = width;
+    }
+
+    /**
+     * Allocates a writable store backed by a direct buffer.
+     *
+     * @param slots the number of slots, usually the size of the hash function
+     * @param width the size of a record, in bytes
+     * @return a zeroed store
+     */
+    public static FixedWidthValues allocate(int slots, int width) {
+        if (slots < 0 || width < 1) {
+            throw new IllegalArgumentException("Number of slots must be positive and width at least 1 byte");
+        }
+        if ((long) slots * width > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Value store is limited to 2GB");
+        }
+        return new FixedWidthValues(ByteBuffer.allocateDirect(slots * width), slots, width);
+    }
+
+    static FixedWidthValues read(ByteBuffer file, int slots, int width) {
+        return new FixedWidthValues(slice(file, HEADER_SIZE, Math.multiplyExact(slots, width)).asReadOnlyBuffer(), slots, width);
+    }
+
+    /**
+     * @return the size of a record, in bytes
+     */
+    public int width() {
+        return width;
+    }
+
+    @Override
+    public int size() {
+        return slots;
+    }
+
+    @Override
+    public int length(int slot) {
+        return width;
+    }
+
+    @Override
+    public ByteBuffer get(int slot) {
+        return slice(buffer, slot * width, width).asReadOnlyBuffer();
+    }
+
+    @Override
+    public int get(int slot, byte[] dst, int offset) {
+        ByteBuffer view = buffer.duplicate();
+        ((Buffer) view).position(slot * width);
+        view.get(dst, offset, width);
+        return width;
+    }
+
+    public byte getByte(int slot, int offset) {
+        return buffer.get(slot * width + offset);
+    }
+
+    public int getInt(int slot, int offset) {
+        return buffer.getInt(slot * width + offset);
+    }
+
+    public long getLong(int slot, int offset) {
+        return buffer.getLong(slot * width + offset);
+    }
+
+    public double getDouble(int slot, int offset) {
+        return buffer.getDouble(slot * width + offset);
+    }
+
+    /**
+     * Writes a whole record.
+     *
+     * @param slot the slot of the record
+     * @param value the record, which must be exactly {@link #width()} bytes long
+     * @return this store
+     */
+    public FixedWidthValues put(int slot, byte[] value) {
+        if (value.length != width) {
+            throw new IllegalArgumentException("Value has " + value.length + " bytes but records are " + width + " bytes wide");
+        }
+        ByteBuffer view = buffer.duplicate();
+        ((Buffer) view).position(slot * width);
+        view.put(value);
+        return this;
+    }
+
+    public FixedWidthValues putByte(int slot, int offset, byte value) {
+        buffer.put(slot * width + offset, value);
+        return this;
+    }
+
+    public FixedWidthValues putInt(int slot, int offset, int value) {
+        buffer.putInt(slot * width + offset, value);
+        return this;
+    }
+
+    public FixedWidthValues putLong(int slot, int offset, long value) {
+        buffer.putLong(slot * width + offset, value);
+        return this;
+    }
+
+    public FixedWidthValues putDouble(int slot, int offset, double value) {
+        buffer.putDouble(slot * width + offset, value);
+        return this;
+    }
+
+    @Override
+    void writeHeader(ByteBuffer header) {
+        header.putInt(FIXED_WIDTH);
+        header.putInt(slots);
+        header.putInt(width);
+    }
+
+    @Override
+    ByteBuffer content() {
+        ByteBuffer content = buffer.duplicate();
+        ((Buffer) content).clear();
+        return content;
+    }
+
+    @Override
+    public String toString() {
+        return "Off-heap store of " + slots + " records of " + width + " bytes";
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2003-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.champeau.rigel.hash;
+
+import me.champeau.rigel.hash.BytesMPHBuilder.BytesRandomizedHasher;
+import me.champeau.rigel.hash.IntMPHBuilder.IntRandomizedHasher;
+import me.champeau.rigel.hash.LongMPHBuilder.LongRandomizedHasher;
+import me.champeau.rigel.hash.MPHBuilder.RandomizedHasher;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Ready-made randomized hashers for common key types. They don't allocate and are
+ * based on a 64-bit multiply-rotate mixer, with a strong finalizer, so that hashes
+ * computed with different seeds are independent. Hashers are stateless and thread safe.
+ *
+ * Byte arrays and byte buffers with the same content have the same hash, whatever
+ * the byte order of the buffer.
+ */
+public final class Hashers {
+    private static final long K0 = 0x9E3779B97F4A7C15L;
+    private static final long K1 = 0xC2B2AE3D27D4EB4FL;
+    private static final long K2 = 0x165667B19E3779F9L;
+
+    private Hashers() {
+    }
+
+    public static RandomizedHasher<CharSequence> charSequences() {
+        return Hashers::hash;
+    }
+
+    public static RandomizedHasher<ByteBuffer> byteBuffers() {
+        return Hashers::hash;
+    }
+
+    public static BytesRandomizedHasher bytes() {
+        return Hashers::hash;
+    }
+
+    public static LongRandomizedHasher longs() {
+        return Hashers::hash;
+    }
+
+    public static IntRandomizedHasher ints() {
+        return Hashers::hash;
+    }
+
+    static int hash(long key, int seed) {
+        return (int) (fmix(key + (seed + 1) * K0) >>> 32);
+    }
+
+    static int hash(int key, int seed) {
+        return hash((long) key, seed);
+    }
+
+    static int hash(CharSequence key, int seed) {
+        int length = key.length();
+        long h = start(seed, length);
+        int i = 0;
+        for (; i + 4 <= length; i += 4) {
+            h = round(h, key.charAt(i)
+                    | (long) key.charAt(i + 1) << 16
+                    | (long) key.charAt(i + 2) << 32
+                    | (long) key.charAt(i + 3) << 48);
+        }
+        long tail = 0;
+        for (int shift = 0; i < length; i++, shift += 16) {
+            tail |= (long) key.charAt(i) << shift;
+        }
+        return (int) (fmix(round(h, tail)) >>> 32);
+    }
+
+    static int hash(byte[] data, int offset, int length, int seed) {
+        long h = start(seed, length);
+        int i = offset;
+        int end = offset + length;
+        for (; i + 8 <= end; i += 8) {
+            h = round(h, (data[i] & 0xFFL)
+                    | (data[i + 1] & 0xFFL) << 8
+                    | (data[i + 2] & 0xFFL) << 16
+                    | (data[i + 3] & 0xFFL) << 24
+                    | (data[i + 4] & 0xFFL) << 32
+                    | (data[i + 5] & 0xFFL) << 40
+                    | (data[i + 6] & 0xFFL) << 48
+                    | (data[i + 7] & 0xFFL) << 56);
+        }
+        return (int) (fmix(round(h, tail(data, i, end))) >>> 32);
+    }
+
+    private static long tail(byte[] data, int from, int end) {
+        long tail = 0;
+        for (int i = from, shift = 0; i < end; i++, shift += 8) {
+            tail |= (data[i] & 0xFFL) << shift;
+        }
+        return tail;
+    }
+
+    /**
+     * Hashes the remaining bytes of the buffer, without changing its position
+     */
+    static int hash(ByteBuffer key, int seed) {
+        int end = key.limit();
+        int i = key.position();
+        boolean bigEndian = key.order() == ByteOrder.BIG_ENDIAN;
+        long h = start(seed, end - i);
+        for (; i + 8 <= end; i += 8) {
+            long value = key.getLong(i);
+            h = round(h, bigEndian ? Long.reverseBytes(value) : value);
+        }
+        long tail = 0;
+        for (int shift = 0; i < end; i++, shift += 8) {
+            tail |= (key.get(i) & 0xFFL) << shift;
+        }
+        return (int) (fmix(round(h, tail)) >>> 32);
+    }
+
+    private static long start(int seed, int length) {
+        return (seed + 1) * K0 ^ length * K2;
+    }
+
+    private static long round(long h, long value) {
+        return Long.rotateLeft(h ^ value * K1, 31) * K0;
+    }
+
+    private static long fmix(long h) {
+        h = (h ^ (h >>> 30)) * 0xBF58476D1CE4E5B9L;
+        h = (h ^ (h >>> 27)) * 0x94D049BB133111EBL;
+        return h ^ (h >>> 31);
+    }
+
+    /**
+     * Mixes the bits of a hash code which may be of poor quality, like the
+     * hash code of small strings.
+     */
+    static int mix(int h) {
+        h = (h ^ (h >>> 16)) * 0x85EBCA6B;
+        h = (h ^ (h >>> 13)) * 0xC2B2AE35;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Mixes all the bits of a 64-bit key into an int, after combining the key with
+     * a seed: different seeds give independent hashes, and a seed of 0 mixes the key
+     * as is. Unlike {@link #hash(long, int)}, it only uses operations which have
+     * vector counterparts.
+     */
+    static int mix(long key, int seed) {
+        return (int) (fmix(key ^ salt(seed)) >>> 32);
+    }
+
+    static long salt(int seed) {
+        return seed * K1;
+    }
+
+    /**
+     * Maps a hash uniformly to the 0..n range using a multiplication and a shift
+     * instead of a division. It uses the high bits of the hash.
+     */
+    static int reduce(int hash, int n) {
+        return (int) (((hash & 0xFFFFFFFFL) * n) >>> 32);
+    }
+}
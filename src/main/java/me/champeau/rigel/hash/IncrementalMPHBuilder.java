@@ -0,0 +1,180 @@
+/*
+ * Copyright 2003-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.champeau.rigel.hash;
+
+import me.champeau.rigel.hash.MPHBuilder.Compression;
+import me.champeau.rigel.hash.MPHBuilder.RandomizedHasher;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * A minimal perfect hash function builder for key sets which grow over time. Keys
+ * are dispatched to a fixed number of segments, each segment being an automatically
+ * sized {@link MPHBuilder}, and the built hash function is partitioned by segment.
+ * Building again after adding keys only rebuilds the segments which received new
+ * keys and reuses the hash functions of the other segments, so the cost of a build
+ * is proportional to the number of added keys times the size of a segment.
+ *
+ * Small segments make incremental builds cheaper, at the cost of 32 bits of offset
+ * per segment in the built hash function. The number of segments can't be changed
+ * once keys are added, since it determines which segment each key belongs to.
+ *
+ * @param <T> the type of data to hash
+ */
+public class IncrementalMPHBuilder<T> {
+    private final RandomizedHasher<? super T> hasher;
+    private final MPHBuilder<T>[] segments;
+    private final MinimalPerfectHasher<T>[] built;
+    private final boolean[] dirty;
+    private int dirtyCount;
+    private BuildStats stats;
+
+    /**
+     * Creates an incremental builder.
+     *
+     * @param segments the number of segments, for example the expected number of keys divided by 1000
+     * @param hasher the hasher of keys
+     */
+    @SuppressWarnings("unchecked")
+    public IncrementalMPHBuilder(int segments, RandomizedHasher<? super T> hasher) {
+        if (segments < 1) {
+            throw new IllegalArgumentException("Number of segments must be positive");
+        }
+        this.hasher = hasher;
+        this.segments = (MPHBuilder<T>[]) new MPHBuilder[segments];
+        this.built = (MinimalPerfectHasher<T>[]) new MinimalPerfectHasher[segments];
+        this.dirty = new boolean[segments];
+        for (int i = 0; i < segments; i++) {
+            this.segments[i] = new MPHBuilder<T>(hasher);
+        }
+        Arrays.fill(dirty, true);
+        dirtyCount = segments;
+    }
+
+    /**
+     * Sets the average number of keys per first level bucket of the segments.
+     *
+     * @param keysPerBucket the average number of keys per bucket, at least 1
+     * @return this builder
+     * @see MPHBuilder#withLoadFactor(double)
+     */
+    public IncrementalMPHBuilder<T> withLoadFactor(double keysPerBucket) {
+        for (MPHBuilder<T> segment : segments) {
+            segment.withLoadFactor(keysPerBucket);
+        }
+        markAllDirty();
+        return this;
+    }
+
+    /**
+     * Selects how the seeds of the built hash functions are stored.
+     *
+     * @param compression the seed compression
+     * @return this builder
+     */
+    public IncrementalMPHBuilder<T> withCompression(Compression compression) {
+        for (MPHBuilder<T> segment : segments) {
+            segment.withCompression(compression);
+        }
+        markAllDirty();
+        return this;
+    }
+
+    private void markAllDirty() {
+        Arrays.fill(dirty, true);
+        dirtyCount = segments.length;
+    }
+
+    public void add(T key) {
+        int segment = MPHBuilder.partitionHash(key, hasher, segments.length);
+        MPHBuilder<T> builder = segments[segment];
+        int before = builder.size();
+        builder.add(key);
+        if (builder.size() != before && !dirty[segment]) {
+            dirty[segment] = true;
+            dirtyCount++;
+        }
+    }
+
+    /**
+     * @return the number of segments which will be rebuilt by the next build
+     */
+    public int dirtySegments() {
+        return dirtyCount;
+    }
+
+    /**
+     * Builds the hash function, rebuilding the segments which changed since the
+     * last build in the calling thread.
+     *
+     * @return a minimal perfect hash function
+     */
+    public MinimalPerfectHasher<T> build() {
+        return build(Runnable::run);
+    }
+
+    /**
+     * Builds the hash function, rebuilding the segments which changed since the
+     * last build on the supplied executor. Hash functions previously returned by
+     * this builder are not affected.
+     *
+     * @param executor the executor rebuilding the segments
+     * @return a minimal perfect hash function
+     */
+    public MinimalPerfectHasher<T> build(Executor executor) {
+        long start = System.nanoTime();
+        int[] rebuilt = new int[dirtyCount];
+        //noinspection unchecked
+        CompletableFuture<MinimalPerfectHasher<T>>[] futures = (CompletableFuture<MinimalPerfectHasher<T>>[]) new CompletableFuture[dirtyCount];
+        for (int i = 0, j = 0; i < segments.length; i++) {
+            if (dirty[i]) {
+                rebuilt[j] = i;
+                futures[j++] = CompletableFuture.supplyAsync(segments[i]::build, executor);
+            }
+        }
+        BuildStats[] segmentStats = new BuildStats[rebuilt.length];
+        try {
+            for (int j = 0; j < rebuilt.length; j++) {
+                int segment = rebuilt[j];
+                built[segment] = futures[j].join();
+                segmentStats[j] = segments[segment].stats();
+                dirty[segment] = false;
+                dirtyCount--;
+            }
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+        stats = BuildStats.combine(segmentStats, System.nanoTime() - start);
+        return new PartitionedHasher<>(hasher, built.clone());
+    }
+
+    /**
+     * Returns statistics about the segments rebuilt by the last build: the number
+     * of keys is the number of keys which were hashed again, not the size of the
+     * hash function.
+     *
+     * @return the statistics of the last build, or null if nothing was built yet
+     */
+    public BuildStats stats() {
+        return stats;
+    }
+}
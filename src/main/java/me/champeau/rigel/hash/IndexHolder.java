@@ -0,0 +1,244 @@
+/*
+ * Copyright 2003-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.champeau.rigel.hash;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Holds the current version of a read-only index, typically an {@link MphMap} or a
+ * {@link MinimalPerfectHasher} together with the arrays it indexes, and replaces it
+ * atomically with a new version built in the background.
+ *
+ * A version must be immutable and contain everything a lookup needs, so that a reader
+ * which calls {@link #current()} once sees a hash function and its values which belong
+ * together, even if a new version is published in the meantime. Reading the current
+ * version is a single volatile read, so readers are wait-free.
+ *
+ * Versions which hold resources which can't be left to the garbage collector, like
+ * memory mapped files, can be published with a release action. Such versions must be
+ * read through {@link #acquire()}: the release action is called once the version has
+ * been replaced and the last lease on it is closed.
+ *
+ * @param <T> the type of index
+ */
+public final class IndexHolder<T> implements AutoCloseable {
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<IndexHolder, Version> CURRENT =
+            AtomicReferenceFieldUpdater.newUpdater(IndexHolder.class, Version.class, "current");
+
+    private volatile Version<T> current;
+
+    private IndexHolder(Version<T> current) {
+        this.current = current;
+    }
+
+    /**
+     * Creates a holder for an index which doesn't need to be released.
+     *
+     * @param initial the initial version
+     * @param <T> the type of index
+     * @return a new holder
+     */
+    public static <T> IndexHolder<T> of(T initial) {
+        return new IndexHolder<>(new Version<>(initial, null));
+    }
+
+    /**
+     * Creates a holder for an index which must be released once it's no longer used.
+     *
+     * @param initial the initial version
+     * @param release called with the initial version once it's replaced and no longer leased
+     * @param <T> the type of index
+     * @return a new holder
+     */
+    public static <T> IndexHolder<T> of(T initial, Consumer<? super T> release) {
+        return new IndexHolder<>(new Version<>(initial, release));
+    }
+
+    /**
+     * Returns the current version. The result must not be used after it was replaced
+     * if it was published with a release action: use {@link #acquire()} instead.
+     *
+     * @return the current version
+     * @throws IllegalStateException if this holder is closed
+     */
+    public T current() {
+        Version<T> version = current;
+        if (version == null) {
+            throw new IllegalStateException("Index holder is closed");
+        }
+        return version.index;
+    }
+
+    /**
+     * Leases the current version, which won't be released until the lease is closed.
+     * Leases are meant to be short lived, for example for the duration of a request.
+     * Leasing is lock-free: it only retries if the version it read is released
+     * concurrently, in which case a newer version is already published.
+     *
+     * @return a lease on the current version
+     * @throws IllegalStateException if this holder is closed
+     */
+    public Lease<T> acquire() {
+        while (true) {
+            Version<T> version = current;
+            if (version == null) {
+                throw new IllegalStateException("Index holder is closed");
+            }
+            if (version.retain()) {
+                return new Lease<>(version);
+            }
+            // the version was replaced and released while we were reading it, the
+            // next one is already published
+        }
+    }
+
+    /**
+     * Replaces the current version with an index which doesn't need to be released.
+     *
+     * @param next the new version
+     */
+    public void publish(T next) {
+        publish(next, null);
+    }
+
+    /**
+     * Replaces the current version. The replaced version is released once its last
+     * lease is closed.
+     *
+     * @param next the new version
+     * @param release called with the new version once it's replaced and no longer leased, may be null
+     * @throws IllegalStateException if this holder is closed
+     */
+    public void publish(T next, Consumer<? super T> release) {
+        Version<T> version = new Version<>(next, release);
+        while (true) {
+            Version<T> previous = current;
+            if (previous == null) {
+                version.release();
+                throw new IllegalStateException("Index holder is closed");
+            }
+            if (CURRENT.compareAndSet(this, previous, version)) {
+                previous.release();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Builds a new version on an executor, then publishes it. Readers keep using the
+     * current version until the new one is ready. If the build fails, the current
+     * version is kept and the returned future completes exceptionally.
+     *
+     * @param builder builds the new version, for example using {@link MPHBuilder}
+     * @param executor the executor running the build
+     * @return a future completed with the new version once it's published
+     */
+    public CompletableFuture<T> rebuild(Supplier<? extends T> builder, Executor executor) {
+        return CompletableFuture.supplyAsync(builder, executor).thenApply(next -> {
+            publish(next);
+            return next;
+        });
+    }
+
+    /**
+     * Removes the current version, which is released once its last lease is closed.
+     * Closing a closed holder has no effect.
+     */
+    @Override
+    public void close() {
+        @SuppressWarnings("unchecked")
+        Version<T> previous = CURRENT.getAndSet(this, null);
+        if (previous != null) {
+            previous.release();
+        }
+    }
+
+    /**
+     * A lease on a version of an index, which prevents it from being released.
+     *
+     * @param <T> the type of index
+     */
+    public static final class Lease<T> implements AutoCloseable {
+        private Version<T> version;
+
+        private Lease(Version<T> version) {
+            this.version = version;
+        }
+
+        /**
+         * @return the leased version
+         * @throws IllegalStateException if the lease is closed
+         */
+        public T get() {
+            Version<T> version = this.version;
+            if (version == null) {
+                throw new IllegalStateException("Lease is closed");
+            }
+            return version.index;
+        }
+
+        @Override
+        public void close() {
+            Version<T> version = this.version;
+            if (version != null) {
+                this.version = null;
+                version.release();
+            }
+        }
+    }
+
+    /**
+     * A published version, with a reference count. The holder owns one reference
+     * until the version is replaced, and each lease owns another one: the release
+     * action is called when the count drops to zero, after which it can't be retained.
+     */
+    private static final class Version<T> {
+        @SuppressWarnings("rawtypes")
+        private static final AtomicIntegerFieldUpdater<Version> REFS = AtomicIntegerFieldUpdater.newUpdater(Version.class, "refs");
+
+        private final T index;
+        private final Consumer<? super T> release;
+        private volatile int refs = 1;
+
+        private Version(T index, Consumer<? super T> release) {
+            this.index = index;
+            this.release = release;
+        }
+
+        boolean retain() {
+            int refs;
+            do {
+                refs = this.refs;
+                if (refs == 0) {
+                    return false;
+                }
+            } while (!REFS.compareAndSet(this, refs, refs + 1));
+            return true;
+        }
+
+        void release() {
+            if (REFS.decrementAndGet(this) == 0 && release != null) {
+                release.accept(index);
+            }
+        }
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2003-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.champeau.rigel.hash;
+
+/**
+ * The {@link PartitionedHasher} counterpart for primitive int keys.
+ */
+final class IntPartitionedHasher implements IntMinimalPerfectHasher {
+    private final IntMinimalPerfectHasher[] partitions;
+    private final int[] offsets;
+
+    IntPartitionedHasher(IntMinimalPerfectHasher[] partitions) {
+        this.partitions = partitions;
+        this.offsets = new int[partitions.length + 1];
+        for (int i = 0; i < partitions.length; i++) {
+            offsets[i + 1] = offsets[i] + partitions[i].size();
+        }
+    }
+
+    @Override
+    public int applyAsInt(int key) {
+        int p = IntMPHBuilder.partitionHash(key, partitions.length);
+        int offset = offsets[p];
+        if (offsets[p + 1] == offset) {
+            // empty partition, only reachable for keys which were not in the key set
+            return 0;
+        }
+        return offset + partitions[p].applyAsInt(key);
+    }
+
+    @Override
+    public int size() {
+        return offsets[partitions.length];
+    }
+
+    @Override
+    public double bitsPerKey() {
+        int size = size();
+        if (size == 0) {
+            return 0;
+        }
+        double bits = 32d * offsets.length;
+        for (IntMinimalPerfectHasher partition : partitions) {
+            bits += partition.bitsPerKey() * partition.size();
+        }
+        return bits / size;
+    }
+
+    @Override
+    public String toString() {
+        return "Minimal Perfect Hash function for " + size() + " int keys in " + partitions.length + " partitions";
+    }
+}
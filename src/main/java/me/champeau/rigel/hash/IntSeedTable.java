@@ -0,0 +1,53 @@
+/*
+ * Copyright 2003-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.champeau.rigel.hash;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * The uncompressed seed table: one 32-bit integer per bucket.
+ */
+final class IntSeedTable implements SeedTable {
+    private final int[] seeds;
+
+    IntSeedTable(int[] seeds) {
+        this.seeds = seeds;
+    }
+
+    @Override
+    public int seed(int bucket) {
+        return seeds[bucket];
+    }
+
+    @Override
+    public void seeds(int[] buckets, int from, int to) {
+        BatchKernels.gather(seeds, buckets, from, to);
+    }
+
+    @Override
+    public long sizeInBits() {
+        return 32L * seeds.length;
+    }
+
+    @Override
+    public void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(MPHFile.INT_SEEDS);
+        for (int seed : seeds) {
+            out.writeInt(seed);
+        }
+    }
+}
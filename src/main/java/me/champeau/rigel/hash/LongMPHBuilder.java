@@ -0,0 +1,225 @@
+/*
+ * Copyright 2003-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.champeau.rigel.hash;
+
+import me.champeau.rigel.hash.MPHBuilder.Compression;
+
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+import static me.champeau.rigel.hash.MPHBuilder.AUTO;
+import static me.champeau.rigel.hash.MPHBuilder.DEFAULT_LOAD_FACTOR;
+import static me.champeau.rigel.hash.MPHBuilder.HASH_CODE_FIRST_LEVEL;
+import static me.champeau.rigel.hash.MPHBuilder.PARTITION_SEED;
+
+/**
+ * A {@link MPHBuilder} specialized for primitive long keys: keys are stored in a
+ * flat array and never boxed, neither when building nor when hashing.
+ *
+ * Like {@link MPHBuilder}, builders created without a number of buckets size the
+ * first level from the number of keys and retry failed builds, and large key sets
+ * can be built in partitions. The first level mixes all the bits of the keys, with
+ * a seed in automatically sized builders, and doesn't call the hasher.
+ */
+public class LongMPHBuilder {
+    private final int firstLevelSize;
+    private final LongRandomizedHasher hasher;
+    private Compression compression = Compression.NONE;
+    private double loadFactor = DEFAULT_LOAD_FACTOR;
+    private BuildStats stats;
+    // keys in insertion order, and an open addressing index of key positions + 1 to reject duplicates
+    private long[] keys = new long[16];
+    private int[] index = new int[32];
+    private int size;
+
+    public LongMPHBuilder(int firstLevelSize, LongRandomizedHasher hasher) {
+        this.firstLevelSize = MPHBuilder.checkFirstLevelSize(firstLevelSize);
+        this.hasher = hasher;
+    }
+
+    /**
+     * Creates a builder which chooses the number of first level buckets from the
+     * number of keys, and retries failed builds instead of giving up.
+     *
+     * @param hasher the hasher of keys
+     * @see MPHBuilder#MPHBuilder(MPHBuilder.RandomizedHasher)
+     */
+    public LongMPHBuilder(LongRandomizedHasher hasher) {
+        this.firstLevelSize = AUTO;
+        this.hasher = hasher;
+    }
+
+    /**
+     * Sets the average number of keys per first level bucket of automatically sized
+     * builders.
+     *
+     * @param keysPerBucket the average number of keys per bucket, at least 1
+     * @return this builder
+     * @see MPHBuilder#withLoadFactor(double)
+     */
+    public LongMPHBuilder withLoadFactor(double keysPerBucket) {
+        this.loadFactor = MPHBuilder.checkLoadFactor(firstLevelSize, keysPerBucket);
+        return this;
+    }
+
+    /**
+     * Selects how the seeds of the built hash functions are stored.
+     *
+     * @param compression the seed compression
+     * @return this builder
+     */
+    public LongMPHBuilder withCompression(Compression compression) {
+        this.compression = compression;
+        return this;
+    }
+
+    public void add(long key) {
+        int mask = index.length - 1;
+        int slot = indexHash(key) & mask;
+        for (int k; (k = index[slot]) != 0; slot = (slot + 1) & mask) {
+            if (keys[k - 1] == key) {
+                return;
+            }
+        }
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, 2 * size);
+        }
+        keys[size++] = key;
+        index[slot] = size;
+        if (2 * size > index.length) {
+            growIndex();
+        }
+    }
+
+    private void growIndex() {
+        int[] newIndex = new int[2 * index.length];
+        int mask = newIndex.length - 1;
+        for (int i = 0; i < size; i++) {
+            int slot = indexHash(keys[i]) & mask;
+            while (newIndex[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            newIndex[slot] = i + 1;
+        }
+        index = newIndex;
+    }
+
+    private static int indexHash(long key) {
+        int h = Long.hashCode(key) * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    static int firstLevelHash(long key, int firstLevelSize, int firstLevelSeed) {
+        return Hashers.reduce(Hashers.mix(key, firstLevelSeed), firstLevelSize);
+    }
+
+    static int secondLevelHash(long key, LongRandomizedHasher hasher, int size, int seed) {
+        return Hashers.reduce(hasher.hash(key, seed), size);
+    }
+
+    /**
+     * Partitions are chosen by the mixer of the first level rather than by the hasher:
+     * the ready-made hashers use the same finalizer, so a hasher seed could give the
+     * same hash as the first level of partitions, whose keys would then only fill a
+     * fraction of the buckets.
+     */
+    static int partitionHash(long key, int partitions) {
+        return Hashers.reduce(Hashers.mix(key, PARTITION_SEED), partitions);
+    }
+
+    /**
+     * Builds a partitioned hash function using the common fork join pool.
+     *
+     * @param partitions the number of partitions
+     * @return a minimal perfect hash function
+     * @see #build(int, Executor)
+     */
+    public LongMinimalPerfectHasher build(int partitions) {
+        return build(partitions, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Builds a partitioned hash function, the partitions being built independently
+     * on the supplied executor.
+     *
+     * @param partitions the number of partitions
+     * @param executor the executor building the partitions
+     * @return a minimal perfect hash function
+     * @see MPHBuilder#build(int, Executor)
+     */
+    public LongMinimalPerfectHasher build(int partitions, Executor executor) {
+        if (partitions < 1) {
+            throw new IllegalArgumentException("Number of partitions must be positive");
+        }
+        long start = System.nanoTime();
+        int partitionLevelSize = Math.max(1, (firstLevelSize + partitions - 1) / partitions);
+        LongMPHBuilder[] builders = new LongMPHBuilder[partitions];
+        for (int i = 0; i < partitions; i++) {
+            builders[i] = firstLevelSize == AUTO
+                    ? new LongMPHBuilder(hasher).withLoadFactor(loadFactor)
+                    : new LongMPHBuilder(partitionLevelSize, hasher);
+            builders[i].withCompression(compression);
+        }
+        for (int i = 0; i < size; i++) {
+            long key = keys[i];
+            builders[partitionHash(key, partitions)].add(key);
+        }
+        LongMinimalPerfectHasher[] hashers = new LongMinimalPerfectHasher[partitions];
+        MPHBuilder.buildPartitions(i -> builders[i].build(), hashers, executor);
+        BuildStats[] partitionStats = new BuildStats[partitions];
+        for (int i = 0; i < partitions; i++) {
+            partitionStats[i] = builders[i].stats;
+        }
+        stats = BuildStats.combine(partitionStats, System.nanoTime() - start);
+        return new LongPartitionedHasher(hashers);
+    }
+
+    public LongMinimalPerfectHasher build() {
+        long start = System.nanoTime();
+        int size = this.size;
+        long[] keys = this.keys;
+        int[] bucketOfKey = new int[size];
+        if (firstLevelSize == AUTO) {
+            return MPHBuilder.buildAdaptive(size, loadFactor, (buckets, firstLevelSeed, failures, attempts) -> {
+                BatchKernels.firstLevelHashes(keys, 0, size, buckets, firstLevelSeed, bucketOfKey);
+                int[] seeds = SeedSearch.tryFindSeeds(buckets, bucketOfKey, keys, (key, seed) -> secondLevelHash(key, hasher, size, seed), failures);
+                if (seeds == null) {
+                    return null;
+                }
+                stats = BuildStats.of(size, attempts, seeds, System.nanoTime() - start);
+                return new LongMPHHash(hasher, buckets, firstLevelSeed, size, compression.encode(seeds));
+            });
+        }
+        BatchKernels.firstLevelHashes(keys, 0, size, firstLevelSize, HASH_CODE_FIRST_LEVEL, bucketOfKey);
+        int[] seeds = SeedSearch.findSeeds(firstLevelSize, bucketOfKey, keys, (key, seed) -> secondLevelHash(key, hasher, size, seed), MPHBuilder.failureBudget(size));
+        stats = BuildStats.of(size, 1, seeds, System.nanoTime() - start);
+        return new LongMPHHash(hasher, firstLevelSize, HASH_CODE_FIRST_LEVEL, size, compression.encode(seeds));
+    }
+
+    /**
+     * Returns statistics about the last hash function built by this builder.
+     *
+     * @return the statistics of the last build, or null if nothing was built yet
+     */
+    public BuildStats stats() {
+        return stats;
+    }
+
+    public interface LongRandomizedHasher {
+        int hash(long element, int seed);
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2003-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.champeau.rigel.hash;
+
+import me.champeau.rigel.hash.LongMPHBuilder.LongRandomizedHasher;
+
+import static me.champeau.rigel.hash.LongMPHBuilder.firstLevelHash;
+import static me.champeau.rigel.hash.LongMPHBuilder.secondLevelHash;
+
+/**
+ * The {@link MPHHash} counterpart for primitive long keys. The first level mixes
+ * the key with the first level seed.
+ */
+final class LongMPHHash implements LongMinimalPerfectHasher {
+    private final LongRandomizedHasher hasher;
+    private final int primarySize;
+    private final int firstLevelSeed;
+    private final int totalSize;
+    private final SeedTable seeds;
+
+    LongMPHHash(LongRandomizedHasher hasher, int primarySize, int firstLevelSeed, int totalSize, SeedTable seeds) {
+        this.hasher = hasher;
+        this.primarySize = primarySize;
+        this.firstLevelSeed = firstLevelSeed;
+        this.totalSize = totalSize;
+        this.seeds = seeds;
+    }
+
+    @Override
+    public int applyAsInt(long key) {
+        int p = firstLevelHash(key, primarySize, firstLevelSeed);
+        return secondLevelHash(key, hasher, totalSize, seeds.seed(p));
+    }
+
+    @Override
+    public void applyAsInt(long[] keys, int[] out) {
+        Batches.checkLength(keys.length, out.length);
+        for (int from = 0; from < keys.length; from += Batches.BLOCK_SIZE) {
+            int to = Math.min(keys.length, from + Batches.BLOCK_SIZE);
+            BatchKernels.firstLevelHashes(keys, from, to, primarySize, firstLevelSeed, out);
+            seeds.seeds(out, from, to);
+            for (int i = from; i < to; i++) {
+                out[i] = secondLevelHash(keys[i], hasher, totalSize, out[i]);
+            }
+        }
+    }
+
+    @Override
+    public double bitsPerKey() {
+        return totalSize == 0 ? 0 : (double) seeds.sizeInBits() / totalSize;
+    }
+
+    @Override
+    public String toString() {
+        return "Minimal Perfect Hash function for " + totalSize + " long keys";
+    }
+
+    @Override
+    public int size() {
+        return totalSize;
+    }
+}
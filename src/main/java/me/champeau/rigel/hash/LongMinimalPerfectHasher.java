@@ -0,0 +1,48 @@
+/*
+ * Copyright 2003-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.champeau.rigel.hash;
+
+import java.util.function.LongToIntFunction;
+
+/**
+ * A minimal perfect hash function for primitive long keys.
+ *
+ * @see LongMPHBuilder
+ */
+public interface LongMinimalPerfectHasher extends LongToIntFunction {
+    int size();
+
+    /**
+     * @return the number of bits used by this hash function per key, not including the hasher itself
+     */
+    double bitsPerKey();
+
+    /**
+     * Computes the hash of each key of an array, which is faster than hashing the
+     * keys one by one for large hash functions, since the memory accesses of the
+     * keys are overlapped.
+     *
+     * @param keys the keys to hash
+     * @param out receives the hash of each key, at the same index
+     * @throws IllegalArgumentException if the output array is shorter than the key array
+     */
+    default void applyAsInt(long[] keys, int[] out) {
+        Batches.checkLength(keys.length, out.length);
+        for (int i = 0; i < keys.length; i++) {
+            out[i] = applyAsInt(keys[i]);
+        }
+    }
+}
@@ -16,153 +16,403 @@
 package me.champeau.rigel.hash;
 
 import java.util.Arrays;
-import java.util.Comparator;
-import java.util.HashSet;
-import java.util.Iterator;
-import java.util.Set;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntFunction;
 
 /**
  * A minimal perfect hash function builder, based on the Hash, Displace and Compress
- * algorithm (http://cmph.sourceforge.net/papers/esa09.pdf) except that the current
- * implementation is pretty naive and doesn't do compress. Therefore it requires a larger
- * initial number of buckets (roughly half the number of keys) to find the perfect hash
- * function.
+ * algorithm (http://cmph.sourceforge.net/papers/esa09.pdf). The current implementation
+ * is pretty naive and requires a larger initial number of buckets (roughly half the
+ * number of keys) to find the perfect hash function. By default the seeds are stored
+ * uncompressed, but a compact representation can be selected using
+ * {@link #withCompression(Compression)}.
+ *
+ * Large key sets can be built in parallel using {@link #build(int, Executor)}, which
+ * splits the keys into independent partitions.
+ *
+ * Keys are stored in flat arrays and only dispatched to buckets when building, so
+ * building again after adding more keys is supported.
+ *
+ * Builders created with {@link #MPHBuilder(RandomizedHasher)} don't need a number of
+ * buckets: it is derived from the number of keys and a target load factor, see
+ * {@link #withLoadFactor(double)}. In this mode the first level uses the hasher with
+ * a dedicated seed instead of {@link Object#hashCode()}, so that a build which fails
+ * is retried with another first level seed, then with more buckets, instead of
+ * failing. Statistics about the last build are available from {@link #stats()}.
+ *
+ * Building again rebuilds the whole key set: for large key sets which grow by small
+ * increments, see {@link IncrementalMPHBuilder}.
  *
  * @param <T> the type of data to hash
  */
 public class MPHBuilder<T> {
-    private static final Comparator<Bucket<?>> BUCKET_COMPARATOR = Comparator.comparingInt(Bucket::size);
+    static final int PARTITION_SEED = -1;
+    // first level seeds of automatically sized builders, 0 meaning that the first level uses hashCode(),
+    // or mixes primitive keys without a seed
+    static final int HASH_CODE_FIRST_LEVEL = 0;
+    private static final int FIRST_LEVEL_SEED = Integer.MIN_VALUE;
+    static final int AUTO = 0;
+    static final double DEFAULT_LOAD_FACTOR = 4.0;
+    private static final int RESEEDS_PER_SIZE = 3;
+    private static final int MAX_ATTEMPTS = 16;
+    private static final int MIN_FAILURES = 100_000;
     private final int firstLevelSize;
-    private final Bucket<T>[] buckets;
-    private final RandomizedHasher<T> hasher;
-    private final int maxFailures = 100_000;
+    private final RandomizedHasher<? super T> hasher;
+    private Compression compression = Compression.NONE;
+    private double loadFactor = DEFAULT_LOAD_FACTOR;
+    private BuildStats stats;
+    // keys in insertion order, and an open addressing index of key positions + 1 to reject duplicates
+    private Object[] keys = new Object[16];
+    private int[] index = new int[32];
     private int size;
 
-    public MPHBuilder(int firstLevelSize, RandomizedHasher<T> hasher) {
-        this.firstLevelSize = firstLevelSize;
-        //noinspection unchecked
-        this.buckets = (Bucket<T>[]) new Bucket[firstLevelSize];
+    public MPHBuilder(int firstLevelSize, RandomizedHasher<? super T> hasher) {
+        this.firstLevelSize = checkFirstLevelSize(firstLevelSize);
         this.hasher = hasher;
-        for (int i = 0; i < firstLevelSize; i++) {
-            buckets[i] = new Bucket<>(i);
-        }
     }
 
-    public void add(T key) {
-        if (buckets[firstLevelHash(key, firstLevelSize)].add(key)) {
-            size++;
-        }
+    /**
+     * Creates a builder which chooses the number of first level buckets from the
+     * number of keys, and retries failed builds instead of giving up.
+     *
+     * @param hasher the hasher of keys
+     */
+    public MPHBuilder(RandomizedHasher<? super T> hasher) {
+        this.firstLevelSize = AUTO;
+        this.hasher = hasher;
     }
 
-    static <T> int firstLevelHash(T key, int firstLevelSize) {
-        return (key.hashCode() >>> 1) % firstLevelSize;
+    /**
+     * Sets the average number of keys per first level bucket of automatically sized
+     * builders. Higher load factors produce smaller seed tables, but take longer to
+     * build. The default of 4 gives about 8 bits per key with uncompressed seeds.
+     *
+     * @param keysPerBucket the average number of keys per bucket, at least 1
+     * @return this builder
+     */
+    public MPHBuilder<T> withLoadFactor(double keysPerBucket) {
+        this.loadFactor = checkLoadFactor(firstLevelSize, keysPerBucket);
+        return this;
     }
 
-    static <T> int secondLevelHash(T key, RandomizedHasher<T> hasher, int size, int seed) {
-        return (hasher.hash(key, seed) >>> 1) % size;
+    static int checkFirstLevelSize(int firstLevelSize) {
+        if (firstLevelSize < 1) {
+            throw new IllegalArgumentException("Number of first level buckets must be positive");
+        }
+        return firstLevelSize;
     }
 
-    public MinimalPerfectHasher<T> build() {
-        Arrays.sort(buckets, BUCKET_COMPARATOR.reversed());
-        boolean[] assigned = new boolean[size];
-        for (Bucket<T> bucket : buckets) {
-            int seed = 0;
-            int cpt = 0;
-            int failures = 0;
-            while (cpt != bucket.size()) {
-                boolean[] cur = new boolean[size];
-                cpt = 0;
-                seed++;
-                for (T key : bucket) {
-                    int hash = secondLevelHash(key, hasher, size, seed);
-                    if (assigned[hash] || cur[hash]) {
-                        if (++failures == maxFailures) {
-                            throw new IllegalStateException("Can't build minimal perfect hash function. Try increasing the number of initial buckets.");
-                        }
-                        break;
-                    }
-                    cur[hash] = true;
-                    cpt++;
-                }
-            }
-            for (T key : bucket) {
-                int hash = secondLevelHash(key, hasher, size, seed);
-                assigned[hash] = true;
-            }
-            bucket.seed = seed;
+    static double checkLoadFactor(int firstLevelSize, double keysPerBucket) {
+        if (firstLevelSize != AUTO) {
+            throw new IllegalStateException("The load factor only applies to automatically sized builders");
         }
-        int[] seeds = new int[firstLevelSize];
-        for (Bucket<T> bucket : buckets) {
-            seeds[bucket.idx] = bucket.seed;
+        if (!(keysPerBucket >= 1)) {
+            throw new IllegalArgumentException("Load factor must be at least 1 key per bucket");
         }
-        // reset bucket order
-        Arrays.sort(buckets, Comparator.comparingInt(Bucket::getIndex));
-        return new MPHHash<>(hasher, firstLevelSize, size, seeds);
+        return keysPerBucket;
     }
 
-    private static class Bucket<T> implements Iterable<T> {
-        final Set<T> entries = new HashSet<>();
-        final int idx;
-        int seed;
+    /**
+     * Selects how the seeds of the built hash functions are stored.
+     *
+     * @param compression the seed compression
+     * @return this builder
+     */
+    public MPHBuilder<T> withCompression(Compression compression) {
+        this.compression = compression;
+        return this;
+    }
 
-        private Bucket(int idx) {
-            this.idx = idx;
+    public void add(T key) {
+        int mask = index.length - 1;
+        int slot = indexHash(key) & mask;
+        for (int k; (k = index[slot]) != 0; slot = (slot + 1) & mask) {
+            if (keys[k - 1].equals(key)) {
+                return;
+            }
         }
-
-        public boolean add(T key) {
-            return entries.add(key);
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, 2 * size);
+        }
+        keys[size++] = key;
+        index[slot] = size;
+        if (2 * size > index.length) {
+            growIndex();
         }
+    }
 
-        public int getIndex() {
-            return idx;
+    private void growIndex() {
+        int[] newIndex = new int[2 * index.length];
+        int mask = newIndex.length - 1;
+        for (int i = 0; i < size; i++) {
+            int slot = indexHash(keys[i]) & mask;
+            while (newIndex[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            newIndex[slot] = i + 1;
         }
+        index = newIndex;
+    }
+
+    private static int indexHash(Object key) {
+        int h = key.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    int size() {
+        return size;
+    }
 
-        public int size() {
-            return entries.size();
+    @SuppressWarnings("unchecked")
+    private T key(int i) {
+        return (T) keys[i];
+    }
+
+    static <T> int firstLevelHash(T key, int firstLevelSize) {
+        return Hashers.reduce(Hashers.mix(key.hashCode()), firstLevelSize);
+    }
+
+    static <T> int firstLevelHash(T key, RandomizedHasher<? super T> hasher, int firstLevelSize, int firstLevelSeed) {
+        if (firstLevelSeed == HASH_CODE_FIRST_LEVEL) {
+            return firstLevelHash(key, firstLevelSize);
         }
+        return Hashers.reduce(hasher.hash(key, firstLevelSeed), firstLevelSize);
+    }
+
+    static <T> int secondLevelHash(T key, RandomizedHasher<? super T> hasher, int size, int seed) {
+        return Hashers.reduce(hasher.hash(key, seed), size);
+    }
 
-        @Override
-        public Iterator<T> iterator() {
-            return entries.iterator();
+    static <T> int partitionHash(T key, RandomizedHasher<? super T> hasher, int partitions) {
+        return Hashers.reduce(hasher.hash(key, PARTITION_SEED), partitions);
+    }
+
+    /**
+     * Builds a partitioned hash function using the common fork join pool.
+     *
+     * @param partitions the number of partitions
+     * @return a minimal perfect hash function
+     * @see #build(int, Executor)
+     */
+    public MinimalPerfectHasher<T> build(int partitions) {
+        return build(partitions, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Builds a partitioned hash function. Keys are split into partitions which
+     * are built independently, each with its own seed table, on the supplied executor.
+     * The resulting hash function still maps keys to the whole 0..size() range.
+     * The first level buckets are evenly shared between partitions.
+     *
+     * @param partitions the number of partitions
+     * @param executor the executor building the partitions
+     * @return a minimal perfect hash function
+     */
+    public MinimalPerfectHasher<T> build(int partitions, Executor executor) {
+        if (partitions < 1) {
+            throw new IllegalArgumentException("Number of partitions must be positive");
+        }
+        long start = System.nanoTime();
+        int partitionLevelSize = Math.max(1, (firstLevelSize + partitions - 1) / partitions);
+        //noinspection unchecked
+        MPHBuilder<T>[] builders = (MPHBuilder<T>[]) new MPHBuilder[partitions];
+        for (int i = 0; i < partitions; i++) {
+            builders[i] = firstLevelSize == AUTO
+                    ? new MPHBuilder<T>(hasher).withLoadFactor(loadFactor)
+                    : new MPHBuilder<T>(partitionLevelSize, hasher);
+            builders[i].withCompression(compression);
+        }
+        for (int i = 0; i < size; i++) {
+            T key = key(i);
+            builders[partitionHash(key, hasher, partitions)].add(key);
+        }
+        //noinspection unchecked
+        MinimalPerfectHasher<T>[] hashers = (MinimalPerfectHasher<T>[]) new MinimalPerfectHasher[partitions];
+        buildPartitions(i -> builders[i].build(), hashers, executor);
+        BuildStats[] partitionStats = new BuildStats[partitions];
+        for (int i = 0; i < partitions; i++) {
+            partitionStats[i] = builders[i].stats;
         }
+        stats = BuildStats.combine(partitionStats, System.nanoTime() - start);
+        return new PartitionedHasher<>(hasher, hashers);
+    }
 
-        @Override
-        public String toString() {
-            return "Bucket size " + size();
+    public MinimalPerfectHasher<T> build() {
+        if (firstLevelSize == AUTO) {
+            return buildAdaptive();
         }
+        long start = System.nanoTime();
+        int size = this.size;
+        int[] bucketOfKey = new int[size];
+        for (int i = 0; i < size; i++) {
+            bucketOfKey[i] = firstLevelHash(keys[i], firstLevelSize);
+        }
+        int[] seeds = SeedSearch.findSeeds(firstLevelSize, bucketOfKey, (key, seed) -> secondLevelHash(key(key), hasher, size, seed), failureBudget(size));
+        stats = BuildStats.of(size, 1, seeds, System.nanoTime() - start);
+        return new MPHHash<>(hasher, firstLevelSize, HASH_CODE_FIRST_LEVEL, size, compression.encode(seeds));
     }
 
-    private final static class MPHHash<T> implements MinimalPerfectHasher<T> {
-        private final RandomizedHasher<T> hasher;
-        private final int primarySize;
-        private final int totalSize;
-        private final int[] seeds;
+    private MinimalPerfectHasher<T> buildAdaptive() {
+        long start = System.nanoTime();
+        int size = this.size;
+        int[] bucketOfKey = new int[size];
+        return buildAdaptive(size, loadFactor, (buckets, firstLevelSeed, failures, attempts) -> {
+            for (int i = 0; i < size; i++) {
+                bucketOfKey[i] = firstLevelHash(key(i), hasher, buckets, firstLevelSeed);
+            }
+            int[] seeds = SeedSearch.tryFindSeeds(buckets, bucketOfKey, (key, seed) -> secondLevelHash(key(key), hasher, size, seed), failures);
+            if (seeds == null) {
+                return null;
+            }
+            stats = BuildStats.of(size, attempts, seeds, System.nanoTime() - start);
+            return new MPHHash<>(hasher, buckets, firstLevelSeed, size, compression.encode(seeds));
+        });
+    }
 
-        private MPHHash(RandomizedHasher<T> hasher, int primarySize, int totalSize, int[] seeds) {
-            this.hasher = hasher;
-            this.primarySize = primarySize;
-            this.totalSize = totalSize;
-            this.seeds = seeds;
+    /**
+     * Builds with a number of buckets derived from the load factor. When a bucket
+     * can't be placed, the first level is rehashed with a new seed, which changes
+     * how keys are grouped, and after a few failures the number of buckets grows.
+     * This is shared by the builders of all key types.
+     *
+     * @param size the number of keys
+     * @param loadFactor the initial number of keys per bucket
+     * @param attempt builds a hash function with the given first level
+     * @param <H> the type of the built hash function
+     * @return the hash function built by the first successful attempt
+     */
+    static <H> H buildAdaptive(int size, double loadFactor, Attempt<H> attempt) {
+        int buckets = Math.max(1, (int) Math.ceil(size / loadFactor));
+        int failures = failureBudget(size);
+        for (int i = 0; i < MAX_ATTEMPTS; i++) {
+            if (i > 0 && i % RESEEDS_PER_SIZE == 0 && buckets < size) {
+                buckets = Math.min(size, buckets + buckets / 2 + 1);
+            }
+            H hashFunction = attempt.build(buckets, FIRST_LEVEL_SEED + i, failures, i + 1);
+            if (hashFunction != null) {
+                return hashFunction;
+            }
         }
+        throw new IllegalStateException("Can't build minimal perfect hash function after " + MAX_ATTEMPTS + " attempts. Check that the hasher depends on the whole key.");
+    }
 
-        @Override
-        public int applyAsInt(T key) {
-            int p = firstLevelHash(key, primarySize);
-            return secondLevelHash(key, hasher, totalSize, seeds[p]);
-        }
+    /**
+     * The failure budget of a bucket grows with the number of keys, since the last
+     * buckets of large key sets need about as many trials as there are free slots.
+     */
+    static int failureBudget(int size) {
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(MIN_FAILURES, 8L * size));
+    }
 
-        @Override
-        public String toString() {
-            return "Minimal Perfect Hash function for " + totalSize + " keys";
+    /**
+     * Builds the partitions of a partitioned hash function in parallel.
+     *
+     * @param build builds the partition of the given index
+     * @param partitions receives the hash function of each partition
+     * @param executor the executor building the partitions
+     * @param <H> the type of the hash functions of partitions
+     */
+    static <H> void buildPartitions(IntFunction<? extends H> build, H[] partitions, Executor executor) {
+        //noinspection unchecked
+        CompletableFuture<? extends H>[] futures = (CompletableFuture<? extends H>[]) new CompletableFuture[partitions.length];
+        for (int i = 0; i < partitions.length; i++) {
+            int partition = i;
+            futures[i] = CompletableFuture.supplyAsync(() -> build.apply(partition), executor);
         }
+        try {
+            for (int i = 0; i < partitions.length; i++) {
+                partitions[i] = futures[i].join();
+            }
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
 
-        @Override
-        public int size() {
-            return totalSize;
+    /**
+     * Builds a membership filter for the keys of this builder, which rejects most keys
+     * which are not in the key set.
+     *
+     * @param hashFunction a hash function built by this builder from its current keys
+     * @param falsePositiveRate the maximal rate of keys not in the set which are accepted
+     * @return a membership filter
+     * @see MembershipFilter
+     */
+    public MembershipFilter<T> buildFilter(MinimalPerfectHasher<T> hashFunction, double falsePositiveRate) {
+        if (hashFunction.size() != size) {
+            throw new IllegalArgumentException("Hash function wasn't built from the current keys of this builder");
         }
+        @SuppressWarnings("unchecked")
+        List<T> keys = (List<T>) (List<?>) Arrays.asList(this.keys).subList(0, size);
+        return MembershipFilter.of(hashFunction, hasher, keys, falsePositiveRate);
     }
 
+    /**
+     * Returns statistics about the last hash function built by this builder.
+     *
+     * @return the statistics of the last build, or null if nothing was built yet
+     */
+    public BuildStats stats() {
+        return stats;
+    }
+
+    /**
+     * A family of hash functions indexed by a seed. Slots are computed from the high
+     * bits of the hash, so they must depend on the whole key. See {@link Hashers} for
+     * ready-made implementations.
+     *
+     * @param <T> the type of hashed elements
+     */
     public interface RandomizedHasher<T> {
         int hash(T element, int seed);
     }
+
+    /**
+     * An attempt of an automatically sized build.
+     *
+     * @param <H> the type of the built hash function
+     */
+    interface Attempt<H> {
+        /**
+         * @param buckets the number of first level buckets
+         * @param firstLevelSeed the seed of the first level hash function
+         * @param maxFailures the maximum number of failed seeds for a single bucket
+         * @param attempts the number of attempts so far, including this one
+         * @return the hash function, or null if a bucket couldn't be placed
+         */
+        H build(int buckets, int firstLevelSeed, int maxFailures, int attempts);
+    }
+
+    /**
+     * The representation of the seed table of the built hash functions.
+     */
+    public enum Compression {
+        /**
+         * Seeds are stored as plain integers: fastest lookups, but 32 bits per bucket.
+         */
+        NONE {
+            @Override
+            SeedTable encode(int[] seeds) {
+                return new IntSeedTable(seeds);
+            }
+        },
+        /**
+         * Seeds are bit-packed with a width chosen to minimize the table size, large
+         * seeds being stored in a separate overflow table.
+         */
+        COMPACT {
+            @Override
+            SeedTable encode(int[] seeds) {
+                return CompactSeedTable.of(seeds);
+            }
+        };
+
+        abstract SeedTable encode(int[] seeds);
+    }
 }
@@ -0,0 +1,292 @@
+/*
+ * Copyright 2003-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.champeau.rigel.hash;
+
+import me.champeau.rigel.hash.BytesMPHBuilder.BytesRandomizedHasher;
+import me.champeau.rigel.hash.MPHBuilder.RandomizedHasher;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads and writes minimal perfect hash functions using a binary format, so that
+ * they don't have to be rebuilt from the key set. Only the parameters and the seeds
+ * are stored: the {@link RandomizedHasher} used at build time has to be supplied
+ * when loading.
+ *
+ * Files are loaded using memory mapping and hash functions read their seeds directly
+ * from the mapped file, so loading is almost instantaneous and several processes
+ * using the same file share the same pages. Files are limited to 2GB.
+ */
+public final class MPHFile {
+    static final int MAGIC = 0x524D5048;
+    static final int VERSION = 1;
+
+    static final int SINGLE = 1;
+    static final int PARTITIONED = 2;
+    // a single hash function with a seeded first level
+    static final int SEEDED = 3;
+    // a hash function of key signatures, built by the streaming builders
+    static final int SIGNATURES = 4;
+
+    static final int INT_SEEDS = 1;
+    static final int COMPACT_SEEDS = 2;
+
+    private MPHFile() {
+    }
+
+    /**
+     * Writes a hash function built by {@link MPHBuilder}, {@link StreamingMPHBuilder},
+     * {@link BytesMPHBuilder} or {@link StreamingBytesMPHBuilder} to a file.
+     *
+     * @param hashFunction the hash function to write
+     * @param path the file to write to
+     * @throws IOException if an I/O error occurs
+     */
+    public static void write(MinimalPerfectHasher<?> hashFunction, Path path) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            writeHashFunction(hashFunction, out);
+            if (out.size() == Integer.MAX_VALUE) {
+                throw new IOException("Minimal perfect hash function is too large to be written");
+            }
+        }
+    }
+
+    private static void writeHashFunction(MinimalPerfectHasher<?> hashFunction, DataOutputStream out) throws IOException {
+        if (hashFunction instanceof MPHHash) {
+            MPHHash<?> hash = (MPHHash<?>) hashFunction;
+            writeSingle(hash.primarySize(), hash.firstLevelSeed(), hash.size(), hash.seeds(), out);
+        } else if (hashFunction instanceof BytesMPHHash) {
+            BytesMPHHash hash = (BytesMPHHash) hashFunction;
+            writeSingle(hash.primarySize(), hash.firstLevelSeed(), hash.size(), hash.seeds(), out);
+        } else if (hashFunction instanceof SignatureHash) {
+            writeSignatureTable(((SignatureHash<?>) hashFunction).table(), out);
+        } else if (hashFunction instanceof BytesSignatureHash) {
+            writeSignatureTable(((BytesSignatureHash) hashFunction).table(), out);
+        } else if (hashFunction instanceof PartitionedHasher) {
+            writePartitions(((PartitionedHasher<?>) hashFunction).partitions(), out);
+        } else if (hashFunction instanceof BytesPartitionedHasher) {
+            writePartitions(((BytesPartitionedHasher) hashFunction).partitions(), out);
+        } else {
+            throw new IllegalArgumentException("Unsupported hash function: " + hashFunction);
+        }
+    }
+
+    private static void writeSingle(int primarySize, int firstLevelSeed, int size, SeedTable seeds, DataOutputStream out) throws IOException {
+        if (firstLevelSeed == MPHBuilder.HASH_CODE_FIRST_LEVEL) {
+            out.writeInt(SINGLE);
+            out.writeInt(primarySize);
+        } else {
+            out.writeInt(SEEDED);
+            out.writeInt(primarySize);
+            out.writeInt(firstLevelSeed);
+        }
+        out.writeInt(size);
+        seeds.writeTo(out);
+    }
+
+    private static void writePartitions(MinimalPerfectHasher<?>[] partitions, DataOutputStream out) throws IOException {
+        out.writeInt(PARTITIONED);
+        out.writeInt(partitions.length);
+        for (MinimalPerfectHasher<?> partition : partitions) {
+            writeHashFunction(partition, out);
+        }
+    }
+
+    private static void writeSignatureTable(SignatureTable table, DataOutputStream out) throws IOException {
+        int partitions = table.partitions();
+        out.writeInt(SIGNATURES);
+        out.writeInt(partitions);
+        for (int offset : table.offsets()) {
+            out.writeInt(offset);
+        }
+        for (int offset : table.bucketOffsets()) {
+            out.writeInt(offset);
+        }
+        for (SeedTable seeds : table.seeds()) {
+            seeds.writeTo(out);
+        }
+    }
+
+    /**
+     * Pads the output so that the next long is 8-byte aligned in the file
+     */
+    static void align(DataOutputStream out) throws IOException {
+        while (out.size() % 8 != 0) {
+            out.writeByte(0);
+        }
+    }
+
+    /**
+     * Maps a file written by {@link #write(MinimalPerfectHasher, Path)}.
+     *
+     * @param path the file to map
+     * @param hasher the hasher which was used to build the hash function
+     * @param <T> the type of hashed keys
+     * @return a hash function reading its seeds from the mapped file
+     * @throws IOException if the file cannot be read or isn't a valid minimal perfect hash file
+     */
+    public static <T> MinimalPerfectHasher<T> map(Path path, RandomizedHasher<? super T> hasher) throws IOException {
+        ByteBuffer buffer = mapFile(path);
+        ByteBuffer in = content(buffer);
+        try {
+            return readHashFunction(buffer, in, hasher);
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new IOException("File " + path + " is corrupted", e);
+        }
+    }
+
+    /**
+     * Maps a file to which a hash function of byte array keys was written by
+     * {@link #write(MinimalPerfectHasher, Path)}.
+     *
+     * @param path the file to map
+     * @param hasher the hasher which was used to build the hash function
+     * @return a hash function reading its seeds from the mapped file
+     * @throws IOException if the file cannot be read or isn't a valid minimal perfect hash file
+     */
+    public static BytesMinimalPerfectHasher mapBytes(Path path, BytesRandomizedHasher hasher) throws IOException {
+        ByteBuffer buffer = mapFile(path);
+        ByteBuffer in = content(buffer);
+        try {
+            return readBytesHashFunction(buffer, in, hasher);
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new IOException("File " + path + " is corrupted", e);
+        }
+    }
+
+    private static ByteBuffer mapFile(Path path) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("File " + path + " is too large to be mapped");
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.limit() < 8 || buffer.getInt(0) != MAGIC) {
+            throw new IOException("File " + path + " is not a minimal perfect hash file");
+        }
+        int version = buffer.getInt(4);
+        if (version != VERSION) {
+            throw new IOException("Unsupported minimal perfect hash file version " + version);
+        }
+        return buffer;
+    }
+
+    /**
+     * @return a view of a mapped file, positioned after the header
+     */
+    private static ByteBuffer content(ByteBuffer buffer) {
+        ByteBuffer in = buffer.duplicate();
+        // the Buffer casts link against the Java 8 methods, ByteBuffer overriding them since Java 9
+        ((Buffer) in).position(8);
+        return in;
+    }
+
+    private static <T> MinimalPerfectHasher<T> readHashFunction(ByteBuffer buffer, ByteBuffer in, RandomizedHasher<? super T> hasher) throws IOException {
+        int kind = in.getInt();
+        switch (kind) {
+            case SINGLE:
+            case SEEDED:
+                int primarySize = in.getInt();
+                int firstLevelSeed = kind == SEEDED ? in.getInt() : MPHBuilder.HASH_CODE_FIRST_LEVEL;
+                int size = in.getInt();
+                return new MPHHash<>(hasher, primarySize, firstLevelSeed, size, readSeeds(buffer, in, primarySize));
+            case SIGNATURES:
+                return new SignatureHash<>(hasher, readSignatureTable(buffer, in));
+            case PARTITIONED:
+                //noinspection unchecked
+                MinimalPerfectHasher<T>[] partitions = (MinimalPerfectHasher<T>[]) new MinimalPerfectHasher[in.getInt()];
+                for (int i = 0; i < partitions.length; i++) {
+                    partitions[i] = readHashFunction(buffer, in, hasher);
+                }
+                return new PartitionedHasher<>(hasher, partitions);
+            default:
+                throw new IOException("Unknown hash function kind " + kind);
+        }
+    }
+
+    private static BytesMinimalPerfectHasher readBytesHashFunction(ByteBuffer buffer, ByteBuffer in, BytesRandomizedHasher hasher) throws IOException {
+        int kind = in.getInt();
+        switch (kind) {
+            case SINGLE:
+            case SEEDED:
+                int primarySize = in.getInt();
+                int firstLevelSeed = kind == SEEDED ? in.getInt() : MPHBuilder.HASH_CODE_FIRST_LEVEL;
+                int size = in.getInt();
+                return new BytesMPHHash(hasher, primarySize, firstLevelSeed, size, readSeeds(buffer, in, primarySize));
+            case SIGNATURES:
+                return new BytesSignatureHash(hasher, readSignatureTable(buffer, in));
+            case PARTITIONED:
+                BytesMinimalPerfectHasher[] partitions = new BytesMinimalPerfectHasher[in.getInt()];
+                for (int i = 0; i < partitions.length; i++) {
+                    partitions[i] = readBytesHashFunction(buffer, in, hasher);
+                }
+                return new BytesPartitionedHasher(hasher, partitions);
+            default:
+                throw new IOException("Unknown hash function kind " + kind);
+        }
+    }
+
+    private static SignatureTable readSignatureTable(ByteBuffer buffer, ByteBuffer in) throws IOException {
+        int partitions = in.getInt();
+        if (partitions < 1) {
+            throw new IOException("Invalid number of partitions " + partitions);
+        }
+        int[] offsets = new int[partitions + 1];
+        for (int i = 0; i <= partitions; i++) {
+            offsets[i] = in.getInt();
+        }
+        int[] bucketOffsets = new int[partitions + 1];
+        for (int i = 0; i <= partitions; i++) {
+            bucketOffsets[i] = in.getInt();
+        }
+        SeedTable[] seeds = new SeedTable[partitions];
+        for (int i = 0; i < partitions; i++) {
+            seeds[i] = readSeeds(buffer, in, bucketOffsets[i + 1] - bucketOffsets[i]);
+        }
+        return new SignatureTable(offsets, bucketOffsets, seeds);
+    }
+
+    private static SeedTable readSeeds(ByteBuffer buffer, ByteBuffer in, int primarySize) throws IOException {
+        int encoding = in.getInt();
+        switch (encoding) {
+            case INT_SEEDS:
+                int offset = in.position();
+                ((Buffer) in).position(offset + 4 * primarySize);
+                return new MappedIntSeedTable(buffer, offset, primarySize);
+            case COMPACT_SEEDS:
+                int width = in.getInt();
+                int words = in.getInt();
+                int overflow = in.getInt();
+                int bitsOffset = (in.position() + 7) & ~7;
+                ((Buffer) in).position(bitsOffset + 8 * words + 8 * overflow);
+                return new MappedCompactSeedTable(buffer, width, bitsOffset, words, overflow);
+            default:
+                throw new IOException("Unknown seed encoding " + encoding);
+        }
+    }
+}
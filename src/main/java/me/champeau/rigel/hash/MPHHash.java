@@ -0,0 +1,92 @@
+/*
+ * Copyright 2003-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.champeau.rigel.hash;
+
+import me.champeau.rigel.hash.MPHBuilder.RandomizedHasher;
+
+import static me.champeau.rigel.hash.MPHBuilder.firstLevelHash;
+import static me.champeau.rigel.hash.MPHBuilder.secondLevelHash;
+
+/**
+ * A minimal perfect hash function: the key is first hashed to a bucket,
+ * then hashed again using the seed of that bucket. The first level uses the
+ * key hash code, unless the hash function was built with a first level seed.
+ *
+ * @param <T> the type of hashed keys
+ */
+final class MPHHash<T> implements MinimalPerfectHasher<T> {
+    private final RandomizedHasher<? super T> hasher;
+    private final int primarySize;
+    private final int firstLevelSeed;
+    private final int totalSize;
+    private final SeedTable seeds;
+
+    MPHHash(RandomizedHasher<? super T> hasher, int primarySize, int firstLevelSeed, int totalSize, SeedTable seeds) {
+        this.hasher = hasher;
+        this.primarySize = primarySize;
+        this.firstLevelSeed = firstLevelSeed;
+        this.totalSize = totalSize;
+        this.seeds = seeds;
+    }
+
+    @Override
+    public int applyAsInt(T key) {
+        int p = firstLevelHash(key, hasher, primarySize, firstLevelSeed);
+        return secondLevelHash(key, hasher, totalSize, seeds.seed(p));
+    }
+
+    @Override
+    public void applyAsInt(T[] keys, int[] out) {
+        Batches.checkLength(keys.length, out.length);
+        for (int from = 0; from < keys.length; from += Batches.BLOCK_SIZE) {
+            int to = Math.min(keys.length, from + Batches.BLOCK_SIZE);
+            for (int i = from; i < to; i++) {
+                out[i] = firstLevelHash(keys[i], hasher, primarySize, firstLevelSeed);
+            }
+            seeds.seeds(out, from, to);
+            for (int i = from; i < to; i++) {
+                out[i] = secondLevelHash(keys[i], hasher, totalSize, out[i]);
+            }
+        }
+    }
+
+    @Override
+    public double bitsPerKey() {
+        return totalSize == 0 ? 0 : (double) seeds.sizeInBits() / totalSize;
+    }
+
+    @Override
+    public String toString() {
+        return "Minimal Perfect Hash function for " + totalSize + " keys";
+    }
+
+    @Override
+    public int size() {
+        return totalSize;
+    }
+
+    int primarySize() {
+        return primarySize;
+    }
+
+    int firstLevelSeed() {
+        return firstLevelSeed;
+    }
+
+    SeedTable seeds() {
+        return seeds;
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2003-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.champeau.rigel.hash;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * A {@link CompactSeedTable} read directly from a mapped {@link MPHFile}.
+ */
+final class MappedCompactSeedTable implements SeedTable {
+    private final ByteBuffer buffer;
+    private final int width;
+    private final long escape;
+    private final int bitsOffset;
+    private final int words;
+    private final int overflowOffset;
+    private final int overflow;
+
+    MappedCompactSeedTable(ByteBuffer buffer, int width, int bitsOffset, int words, int overflow) {
+        this.buffer = buffer;
+        this.width = width;
+        this.escape = (1L << width) - 1;
+        this.bitsOffset = bitsOffset;
+        this.words = words;
+        this.overflowOffset = bitsOffset + 8 * words;
+        this.overflow = overflow;
+    }
+
+    @Override
+    public int seed(int bucket) {
+        long position = bucket * (long) width;
+        int word = bitsOffset + 8 * (int) (position >>> 6);
+        int offset = (int) (position & 63);
+        long value = buffer.getLong(word) >>> offset;
+        if (offset + width > 64) {
+            value |= buffer.getLong(word + 8) << (64 - offset);
+        }
+        value &= escape;
+        if (value != escape) {
+            return (int) value;
+        }
+        return buffer.getInt(overflowOffset + 4 * overflow + 4 * overflowIndex(bucket));
+    }
+
+    private int overflowIndex(int bucket) {
+        int low = 0;
+        int high = overflow - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int value = buffer.getInt(overflowOffset + 4 * mid);
+            if (value < bucket) {
+                low = mid + 1;
+            } else if (value > bucket) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        throw new IllegalStateException("Corrupted seed table: no overflow entry for bucket " + bucket);
+    }
+
+    @Override
+    public long sizeInBits() {
+        return 64L * words + 64L * overflow;
+    }
+
+    @Override
+    public void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(MPHFile.COMPACT_SEEDS);
+        out.writeInt(width);
+        out.writeInt(words);
+        out.writeInt(overflow);
+        MPHFile.align(out);
+        for (int i = 0; i < words; i++) {
+            out.writeLong(buffer.getLong(bitsOffset + 8 * i));
+        }
+        for (int i = 0; i < 2 * overflow; i++) {
+            out.writeInt(buffer.getInt(overflowOffset + 4 * i));
+        }
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2003-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.champeau.rigel.hash;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * An uncompressed seed table read directly from a mapped {@link MPHFile}.
+ */
+final class MappedIntSeedTable implements SeedTable {
+    private final ByteBuffer buffer;
+    private final int offset;
+    private final int length;
+
+    MappedIntSeedTable(ByteBuffer buffer, int offset, int length) {
+        this.buffer = buffer;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    @Override
+    public int seed(int bucket) {
+        return buffer.getInt(offset + 4 * bucket);
+    }
+
+    @Override
+    public long sizeInBits() {
+        return 32L * length;
+    }
+
+    @Override
+    public void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(MPHFile.INT_SEEDS);
+        for (int i = 0; i < length; i++) {
+            out.writeInt(seed(i));
+        }
+    }
+}
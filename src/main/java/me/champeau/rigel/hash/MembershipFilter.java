@@ -0,0 +1,147 @@
+/*
+ * Copyright 2003-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.champeau.rigel.hash;
+
+import me.champeau.rigel.hash.MPHBuilder.RandomizedHasher;
+
+import java.util.Arrays;
+
+/**
+ * A probabilistic membership filter derived from a minimal perfect hash function.
+ * A minimal perfect hash function returns a slot for any input, including keys which
+ * were not in the key set. The filter stores a k-bit fingerprint of each key at its
+ * slot, so that most of those keys are rejected without comparing them with the key
+ * of the slot: a key which isn't in the set is accepted with a probability of 2^-k.
+ * Keys of the set are always accepted.
+ *
+ * Filters are usually built with {@link MPHBuilder#buildFilter(MinimalPerfectHasher, double)},
+ * from the same keys as the hash function.
+ *
+ * @param <T> the type of keys
+ */
+public final class MembershipFilter<T> {
+    private final MinimalPerfectHasher<T> hashFunction;
+    private final RandomizedHasher<? super T> hasher;
+    private final Fingerprints fingerprints;
+
+    private MembershipFilter(MinimalPerfectHasher<T> hashFunction, RandomizedHasher<? super T> hasher, Fingerprints fingerprints) {
+        this.hashFunction = hashFunction;
+        this.hasher = hasher;
+        this.fingerprints = fingerprints;
+    }
+
+    /**
+     * Builds a filter for the key set of a hash function.
+     *
+     * @param hashFunction the hash function of the keys
+     * @param hasher the hasher which was used to build the hash function
+     * @param keys all the keys of the hash function
+     * @param falsePositiveRate the maximal rate of keys not in the set which are accepted, rounded down to a power of 2
+     * @param <T> the type of keys
+     * @return a filter
+     */
+    public static <T> MembershipFilter<T> of(MinimalPerfectHasher<T> hashFunction, RandomizedHasher<? super T> hasher, Iterable<? extends T> keys, double falsePositiveRate) {
+        Fingerprints fingerprints = new Fingerprints(hashFunction.size(), fingerprintBits(falsePositiveRate));
+        for (T key : keys) {
+            fingerprints.set(hashFunction.applyAsInt(key), hasher.hash(key, Fingerprints.FINGERPRINT_SEED));
+        }
+        return new MembershipFilter<>(hashFunction, hasher, fingerprints);
+    }
+
+    static int fingerprintBits(double falsePositiveRate) {
+        if (!(falsePositiveRate > 0 && falsePositiveRate < 1)) {
+            throw new IllegalArgumentException("False positive rate must be between 0 and 1, exclusive");
+        }
+        // the smallest number of bits such that 2^-bits <= rate, the epsilon absorbing rounding errors of log
+        int bits = (int) Math.ceil(-Math.log(falsePositiveRate) / Math.log(2) - 1e-9);
+        return Math.max(1, Math.min(32, bits));
+    }
+
+    /**
+     * Returns the slot of a key in the hash function, or -1 if the key is rejected.
+     *
+     * @param key the key
+     * @return the slot of the key, or -1 if it's definitely not in the key set
+     */
+    public int slot(T key) {
+        if (hashFunction.size() == 0) {
+            // the hash function of an empty key set has no seeds to look up
+            return -1;
+        }
+        int slot = hashFunction.applyAsInt(key);
+        return fingerprints.matches(slot, hasher.hash(key, Fingerprints.FINGERPRINT_SEED)) ? slot : -1;
+    }
+
+    /**
+     * Computes the slot of each key of an array, using a batch lookup in the hash function.
+     *
+     * @param keys the keys
+     * @param out receives the slot of each key, or -1 for rejected keys
+     * @see #slot(Object)
+     */
+    public void slots(T[] keys, int[] out) {
+        if (hashFunction.size() == 0) {
+            Batches.checkLength(keys.length, out.length);
+            Arrays.fill(out, 0, keys.length, -1);
+            return;
+        }
+        hashFunction.applyAsInt(keys, out);
+        for (int i = 0; i < keys.length; i++) {
+            if (!fingerprints.matches(out[i], hasher.hash(keys[i], Fingerprints.FINGERPRINT_SEED))) {
+                out[i] = -1;
+            }
+        }
+    }
+
+    /**
+     * @param key the key
+     * @return false if the key is definitely not in the key set
+     */
+    public boolean mightContain(T key) {
+        return slot(key) >= 0;
+    }
+
+    public MinimalPerfectHasher<T> hashFunction() {
+        return hashFunction;
+    }
+
+    /**
+     * @return the number of bits of each fingerprint
+     */
+    public int fingerprintBits() {
+        return fingerprints.bits();
+    }
+
+    /**
+     * @return the probability that a key which isn't in the set is accepted
+     */
+    public double falsePositiveRate() {
+        return 1d / (1L << fingerprints.bits());
+    }
+
+    /**
+     * @return the number of bits used per key by the fingerprints, not including the hash function
+     */
+    public double bitsPerKey() {
+        int size = hashFunction.size();
+        return size == 0 ? 0 : (double) fingerprints.sizeInBits() / size;
+    }
+
+    @Override
+    public String toString() {
+        return "Membership filter for " + hashFunction.size() + " keys with " + fingerprints.bits() + "-bit fingerprints";
+    }
+}
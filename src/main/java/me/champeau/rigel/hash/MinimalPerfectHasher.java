@@ -19,4 +19,25 @@
 
 public interface MinimalPerfectHasher<T> extends ToIntFunction<T> {
     int size();
+
+    /**
+     * @return the number of bits used by this hash function per key, not including the hasher itself
+     */
+    double bitsPerKey();
+
+    /**
+     * Computes the hash of each key of an array, which is faster than hashing the
+     * keys one by one for large hash functions, since the memory accesses of the
+     * keys are overlapped.
+     *
+     * @param keys the keys to hash
+     * @param out receives the hash of each key, at the same index
+     * @throws IllegalArgumentException if the output array is shorter than the key array
+     */
+    default void applyAsInt(T[] keys, int[] out) {
+        Batches.checkLength(keys.length, out.length);
+        for (int i = 0; i < keys.length; i++) {
+            out[i] = applyAsInt(keys[i]);
+        }
+    }
 }
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2003-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.champeau.rigel.hash;
+
+import me.champeau.rigel.hash.MPHBuilder.RandomizedHasher;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An immutable map backed by a minimal perfect hash function. Values are stored in
+ * a dense array indexed by the hash of the key, and keys are not stored at all: looking
+ * up a key which was not put in the map returns an arbitrary value, unless fingerprints
+ * are enabled with {@link Builder#withFingerprints(int)}.
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the values
+ */
+public final class MphMap<K, V> extends AbstractMphMap<K> {
+    private final Object[] values;
+
+    private MphMap(MinimalPerfectHasher<K> hashFunction, RandomizedHasher<? super K> hasher, Fingerprints fingerprints, Object[] values) {
+        super(hashFunction, hasher, fingerprints);
+        this.values = values;
+    }
+
+    public static <K, V> Builder<K, V> builder(RandomizedHasher<? super K> hasher) {
+        return new Builder<>(hasher);
+    }
+
+    /**
+     * @param key the key
+     * @return the value of the key, or null if the key was rejected by its fingerprint
+     */
+    public V get(K key) {
+        return getOrDefault(key, null);
+    }
+
+    @SuppressWarnings("unchecked")
+    public V getOrDefault(K key, V defaultValue) {
+        int slot = slot(key);
+        return slot < 0 ? defaultValue : (V) values[slot];
+    }
+
+    public static final class Builder<K, V> extends AbstractMphMap.Builder<K, Builder<K, V>> {
+        private final List<V> values = new ArrayList<>();
+
+        private Builder(RandomizedHasher<? super K> hasher) {
+            super(hasher);
+        }
+
+        @Override
+        Builder<K, V> self() {
+            return this;
+        }
+
+        /**
+         * Adds an entry to the map. If the key was already added, the last value wins.
+         *
+         * @param key the key
+         * @param value the value
+         * @return this builder
+         */
+        public Builder<K, V> put(K key, V value) {
+            keys.add(key);
+            values.add(value);
+            return this;
+        }
+
+        public MphMap<K, V> build() {
+            MinimalPerfectHasher<K> hashFunction = buildHashFunction();
+            Object[] table = new Object[hashFunction.size()];
+            for (int i = 0; i < keys.size(); i++) {
+                table[hashFunction.applyAsInt(keys.get(i))] = values.get(i);
+            }
+            return new MphMap<>(hashFunction, hasher(), buildFingerprints(hashFunction), table);
+        }
+    }
+}
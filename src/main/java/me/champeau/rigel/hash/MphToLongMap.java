@@ -0,0 +1,89 @@
+/*
+ * Copyright 2003-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.champeau.rigel.hash;
+
+import me.champeau.rigel.hash.MPHBuilder.RandomizedHasher;
+
+import java.util.Arrays;
+
+/**
+ * An immutable map of keys to primitive long values, backed by a minimal perfect hash
+ * function. Values are stored in a dense {@code long[]} indexed by the hash of the key.
+ * Keys are not stored: see {@link MphMap} for what happens when looking up missing keys.
+ *
+ * @param <K> the type of the keys
+ */
+public final class MphToLongMap<K> extends AbstractMphMap<K> {
+    private final long[] values;
+
+    private MphToLongMap(MinimalPerfectHasher<K> hashFunction, RandomizedHasher<? super K> hasher, Fingerprints fingerprints, long[] values) {
+        super(hashFunction, hasher, fingerprints);
+        this.values = values;
+    }
+
+    public static <K> Builder<K> builder(RandomizedHasher<? super K> hasher) {
+        return new Builder<>(hasher);
+    }
+
+    /**
+     * @param key the key
+     * @param defaultValue the value returned if the key was rejected by its fingerprint
+     * @return the value of the key
+     */
+    public long getOrDefault(K key, long defaultValue) {
+        int slot = slot(key);
+        return slot < 0 ? defaultValue : values[slot];
+    }
+
+    public static final class Builder<K> extends AbstractMphMap.Builder<K, Builder<K>> {
+        private long[] values = new long[16];
+
+        private Builder(RandomizedHasher<? super K> hasher) {
+            super(hasher);
+        }
+
+        @Override
+        Builder<K> self() {
+            return this;
+        }
+
+        /**
+         * Adds an entry to the map. If the key was already added, the last value wins.
+         *
+         * @param key the key
+         * @param value the value
+         * @return this builder
+         */
+        public Builder<K> put(K key, long value) {
+            int i = keys.size();
+            if (i == values.length) {
+                values = Arrays.copyOf(values, 2 * i);
+            }
+            keys.add(key);
+            values[i] = value;
+            return this;
+        }
+
+        public MphToLongMap<K> build() {
+            MinimalPerfectHasher<K> hashFunction = buildHashFunction();
+            long[] table = new long[hashFunction.size()];
+            for (int i = 0; i < keys.size(); i++) {
+                table[hashFunction.applyAsInt(keys.get(i))] = values[i];
+            }
+            return new MphToLongMap<>(hashFunction, hasher(), buildFingerprints(hashFunction), table);
+        }
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2003-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.champeau.rigel.hash;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Values of a table indexed by a {@link MinimalPerfectHasher}, stored outside of the
+ * Java heap: the value of a key is found at the slot returned by the hash function.
+ * Whatever the number of values, a store is a handful of objects for the garbage
+ * collector, instead of one object per value.
+ *
+ * Stores are backed by direct byte buffers when they are built, and by memory mapped
+ * files when they are loaded with {@link #map(Path)}. Values are read as views of the
+ * backing buffer, without copying. Stores are limited to 2GB.
+ *
+ * @see FixedWidthValues
+ * @see VariableLengthValues
+ */
+public abstract class OffHeapValues {
+    static final int MAGIC = 0x5256414C;
+    static final int VERSION = 1;
+
+    static final int FIXED_WIDTH = 1;
+    static final int VARIABLE_LENGTH = 2;
+
+    static final int HEADER_SIZE = 24;
+
+    OffHeapValues() {
+    }
+
+    /**
+     * @return the number of slots of this store
+     */
+    public abstract int size();
+
+    /**
+     * @param slot the slot of the value
+     * @return the length of the value, in bytes
+     */
+    public abstract int length(int slot);
+
+    /**
+     * Returns a read-only view of a value, which shares the memory of this store.
+     * The view is positioned at 0 and has a limit and capacity of the value length.
+     *
+     * @param slot the slot of the value
+     * @return a view of the value
+     */
+    public abstract ByteBuffer get(int slot);
+
+    /**
+     * Copies a value to an array.
+     *
+     * @param slot the slot of the value
+     * @param dst the destination array
+     * @param offset the index of the first byte in the destination array
+     * @return the length of the value
+     */
+    public abstract int get(int slot, byte[] dst, int offset);
+
+    /**
+     * Writes this store to a file which can be loaded with {@link #map(Path)}.
+     *
+     * @param path the file to write to
+     * @throws IOException if an I/O error occurs
+     */
+    public void write(Path path) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC);
+        header.putInt(VERSION);
+        writeHeader(header);
+        // the header is padded so that the content is 8-byte aligned in the file
+        ((Buffer) header).clear();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeFully(channel, header);
+            writeFully(channel, content());
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Writes the kind of store and its parameters, after the magic number and version.
+     */
+    abstract void writeHeader(ByteBuffer header);
+
+    /**
+     * @return a buffer over the content of the store, from its position to its limit
+     */
+    abstract ByteBuffer content();
+
+    /**
+     * Maps a store written by {@link #write(Path)}. The file is unmapped when the
+     * returned store becomes unreachable.
+     *
+     * @param path the file to map
+     * @return a read-only store reading its values from the mapped file
+     * @throws IOException if the file cannot be read or isn't a valid value store
+     */
+    public static OffHeapValues map(Path path) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("File " + path + " is too large to be mapped");
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("File " + path + " is not a value store file");
+        }
+        int version = buffer.getInt(4);
+        if (version != VERSION) {
+            throw new IOException("Unsupported value store file version " + version);
+        }
+        int kind = buffer.getInt(8);
+        int slots = buffer.getInt(12);
+        try {
+            switch (kind) {
+                case FIXED_WIDTH:
+                    return FixedWidthValues.read(buffer, slots, buffer.getInt(16));
+                case VARIABLE_LENGTH:
+                    return VariableLengthValues.read(buffer, slots, buffer.getInt(16));
+                default:
+                    throw new IOException("Unknown value store kind " + kind);
+            }
+        } catch (IndexOutOfBoundsException | IllegalArgumentException | ArithmeticException e) {
+            throw new IOException("File " + path + " is corrupted", e);
+        }
+    }
+
+    /**
+     * Returns a view of a range of a buffer, positioned at 0.
+     */
+    static ByteBuffer slice(ByteBuffer buffer, int from, int length) {
+        ByteBuffer view = buffer.duplicate();
+        ((Buffer) view).limit(from + length);
+        ((Buffer) view).position(from);
+        return view.slice();
+    }
+}
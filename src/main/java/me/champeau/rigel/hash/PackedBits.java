@@ -0,0 +1,53 @@
+/*
+ * Copyright 2003-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.champeau.rigel.hash;
+
+/**
+ * Helpers to read and write fixed width values packed in an array of longs.
+ */
+final class PackedBits {
+    private PackedBits() {
+    }
+
+    static long[] allocate(int count, int width) {
+        return new long[(int) ((count * (long) width + 63) >>> 6)];
+    }
+
+    /**
+     * Writes a value at the given index. The value must fit in the width and
+     * the previous value must be zero.
+     */
+    static void write(long[] bits, int index, int width, long value) {
+        long position = index * (long) width;
+        int word = (int) (position >>> 6);
+        int offset = (int) (position & 63);
+        bits[word] |= value << offset;
+        if (offset + width > 64) {
+            bits[word + 1] |= value >>> (64 - offset);
+        }
+    }
+
+    static long read(long[] bits, int index, int width, long mask) {
+        long position = index * (long) width;
+        int word = (int) (position >>> 6);
+        int offset = (int) (position & 63);
+        long value = bits[word] >>> offset;
+        if (offset + width > 64) {
+            value |= bits[word + 1] << (64 - offset);
+        }
+        return value & mask;
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2003-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.champeau.rigel.hash;
+
+import me.champeau.rigel.hash.MPHBuilder.RandomizedHasher;
+
+/**
+ * A minimal perfect hash function made of independent partitions. A key is
+ * first dispatched to a partition, then hashed by the partition hash function,
+ * the result being shifted by the number of keys of the preceding partitions.
+ *
+ * @param <T> the type of hashed keys
+ */
+final class PartitionedHasher<T> implements MinimalPerfectHasher<T> {
+    private final RandomizedHasher<? super T> hasher;
+    private final MinimalPerfectHasher<T>[] partitions;
+    private final int[] offsets;
+
+    PartitionedHasher(RandomizedHasher<? super T> hasher, MinimalPerfectHasher<T>[] partitions) {
+        this.hasher = hasher;
+        this.partitions = partitions;
+        this.offsets = new int[partitions.length + 1];
+        for (int i = 0; i < partitions.length; i++) {
+            offsets[i + 1] = offsets[i] + partitions[i].size();
+        }
+    }
+
+    @Override
+    public int applyAsInt(T key) {
+        int p = MPHBuilder.partitionHash(key, hasher, partitions.length);
+        int offset = offsets[p];
+        if (offsets[p + 1] == offset) {
+            // empty partition, only reachable for keys which were not in the key set
+            return 0;
+        }
+        return offset + partitions[p].applyAsInt(key);
+    }
+
+    @Override
+    public int size() {
+        return offsets[partitions.length];
+    }
+
+    @Override
+    public double bitsPerKey() {
+        int size = size();
+        if (size == 0) {
+            return 0;
+        }
+        double bits = 32d * offsets.length;
+        for (MinimalPerfectHasher<T> partition : partitions) {
+            bits += partition.bitsPerKey() * partition.size();
+        }
+        return bits / size;
+    }
+
+    MinimalPerfectHasher<T>[] partitions() {
+        return partitions;
+    }
+
+    @Override
+    public String toString() {
+        return "Minimal Perfect Hash function for " + size() + " keys in " + partitions.length + " partitions";
+    }
+}
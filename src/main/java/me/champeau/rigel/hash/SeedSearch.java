@@ -0,0 +1,215 @@
+/*
+ * Copyright 2003-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.champeau.rigel.hash;
+
+import java.util.Arrays;
+
+/**
+ * The displacement step of the Hash, Displace and Compress algorithm: finds, for each
+ * first level bucket, a seed such that the keys of the bucket are sent to free slots.
+ *
+ * Keys are first grouped by bucket with a counting sort, into a flat array where the
+ * keys of a bucket are contiguous, and buckets are ordered by decreasing size with a
+ * second counting sort. Seed trials then scan contiguous ranges of that array. When
+ * keys are 64-bit values, such as primitive keys or signatures, the key values
+ * themselves are moved into bucket order, so trials don't go through key indices.
+ *
+ * The search doesn't allocate per attempt: a single array of slots is used both to
+ * mark the slots which are already assigned and the slots which are taken by the
+ * current attempt, using a generation stamp.
+ */
+final class SeedSearch {
+    private static final int ASSIGNED = -1;
+
+    private SeedSearch() {
+    }
+
+    /**
+     * Computes the slot of a key for a given seed
+     */
+    interface Positions {
+        int position(int key, int seed);
+    }
+
+    /**
+     * Computes the slot of a 64-bit key for a given seed
+     */
+    interface LongPositions {
+        int position(long key, int seed);
+    }
+
+    /**
+     * Finds the seeds of all buckets.
+     *
+     * @param firstLevelSize the number of buckets
+     * @param bucketOfKey the bucket of each key, the number of keys being the number of slots
+     * @param positions the second level hash function
+     * @param maxFailures the maximum number of failed attempts for a single bucket
+     * @return the seed of each bucket
+     */
+    static int[] findSeeds(int firstLevelSize, int[] bucketOfKey, Positions positions, int maxFailures) {
+        return checkFound(tryFindSeeds(firstLevelSize, bucketOfKey, positions, maxFailures));
+    }
+
+    /**
+     * Finds the seeds of all buckets, for 64-bit keys.
+     *
+     * @param firstLevelSize the number of buckets
+     * @param bucketOfKey the bucket of each key, the number of keys being the number of slots
+     * @param keys the keys, of which only the first {@code bucketOfKey.length} are used
+     * @param positions the second level hash function
+     * @param maxFailures the maximum number of failed attempts for a single bucket
+     * @return the seed of each bucket
+     */
+    static int[] findSeeds(int firstLevelSize, int[] bucketOfKey, long[] keys, LongPositions positions, int maxFailures) {
+        return checkFound(tryFindSeeds(firstLevelSize, bucketOfKey, keys, positions, maxFailures));
+    }
+
+    private static int[] checkFound(int[] seeds) {
+        if (seeds == null) {
+            throw new IllegalStateException("Can't build minimal perfect hash function. Try increasing the number of initial buckets.");
+        }
+        return seeds;
+    }
+
+    /**
+     * Finds the seeds of all buckets, giving up if a bucket can't be placed.
+     *
+     * @param firstLevelSize the number of buckets
+     * @param bucketOfKey the bucket of each key, the number of keys being the number of slots
+     * @param positions the second level hash function
+     * @param maxFailures the maximum number of failed attempts for a single bucket
+     * @return the seed of each bucket, or null if a bucket failed more than maxFailures times
+     */
+    static int[] tryFindSeeds(int firstLevelSize, int[] bucketOfKey, Positions positions, int maxFailures) {
+        int size = bucketOfKey.length;
+        int[] bucketStart = bucketStarts(firstLevelSize, bucketOfKey);
+        int[] keys = new int[size];
+        int[] next = Arrays.copyOf(bucketStart, firstLevelSize);
+        for (int key = 0; key < size; key++) {
+            keys[next[bucketOfKey[key]]++] = key;
+        }
+        return search(bucketStart, size, (i, seed) -> positions.position(keys[i], seed), maxFailures);
+    }
+
+    /**
+     * Finds the seeds of all buckets for 64-bit keys, giving up if a bucket can't be placed.
+     *
+     * @param firstLevelSize the number of buckets
+     * @param bucketOfKey the bucket of each key, the number of keys being the number of slots
+     * @param keys the keys, of which only the first {@code bucketOfKey.length} are used
+     * @param positions the second level hash function
+     * @param maxFailures the maximum number of failed attempts for a single bucket
+     * @return the seed of each bucket, or null if a bucket failed more than maxFailures times
+     */
+    static int[] tryFindSeeds(int firstLevelSize, int[] bucketOfKey, long[] keys, LongPositions positions, int maxFailures) {
+        int size = bucketOfKey.length;
+        int[] bucketStart = bucketStarts(firstLevelSize, bucketOfKey);
+        long[] grouped = new long[size];
+        int[] next = Arrays.copyOf(bucketStart, firstLevelSize);
+        for (int key = 0; key < size; key++) {
+            grouped[next[bucketOfKey[key]]++] = keys[key];
+        }
+        return search(bucketStart, size, (i, seed) -> positions.position(grouped[i], seed), maxFailures);
+    }
+
+    /**
+     * Counts the keys of each bucket, returning the start of each bucket in bucket order,
+     * followed by the number of keys.
+     */
+    private static int[] bucketStarts(int firstLevelSize, int[] bucketOfKey) {
+        int[] bucketStart = new int[firstLevelSize + 1];
+        for (int bucket : bucketOfKey) {
+            bucketStart[bucket + 1]++;
+        }
+        for (int i = 0; i < firstLevelSize; i++) {
+            bucketStart[i + 1] += bucketStart[i];
+        }
+        return bucketStart;
+    }
+
+    /**
+     * Searches seeds of keys grouped by bucket, the positions being computed from
+     * the index of a key in bucket order.
+     */
+    private static int[] search(int[] bucketStart, int size, Positions positions, int maxFailures) {
+        int firstLevelSize = bucketStart.length - 1;
+        int maxBucketSize = 0;
+        for (int i = 0; i < firstLevelSize; i++) {
+            maxBucketSize = Math.max(maxBucketSize, bucketStart[i + 1] - bucketStart[i]);
+        }
+        // order buckets by decreasing size, largest buckets being the hardest to place
+        int[] sizeStart = new int[maxBucketSize + 2];
+        for (int i = 0; i < firstLevelSize; i++) {
+            sizeStart[maxBucketSize - (bucketStart[i + 1] - bucketStart[i]) + 1]++;
+        }
+        for (int i = 0; i <= maxBucketSize; i++) {
+            sizeStart[i + 1] += sizeStart[i];
+        }
+        int[] order = new int[firstLevelSize];
+        for (int i = 0; i < firstLevelSize; i++) {
+            order[sizeStart[maxBucketSize - (bucketStart[i + 1] - bucketStart[i])]++] = i;
+        }
+        int[] seeds = new int[firstLevelSize];
+        int[] slots = new int[size];
+        int[] candidates = new int[maxBucketSize];
+        int generation = 0;
+        for (int bucket : order) {
+            int from = bucketStart[bucket];
+            int count = bucketStart[bucket + 1] - from;
+            if (count == 0) {
+                // all remaining buckets are empty
+                break;
+            }
+            int seed = 0;
+            int failures = 0;
+            attempt:
+            while (true) {
+                seed++;
+                if (++generation == Integer.MAX_VALUE) {
+                    generation = resetGenerations(slots);
+                }
+                for (int i = 0; i < count; i++) {
+                    int slot = positions.position(from + i, seed);
+                    int stamp = slots[slot];
+                    if (stamp == ASSIGNED || stamp == generation) {
+                        if (++failures == maxFailures) {
+                            return null;
+                        }
+                        continue attempt;
+                    }
+                    slots[slot] = generation;
+                    candidates[i] = slot;
+                }
+                break;
+            }
+            for (int i = 0; i < count; i++) {
+                slots[candidates[i]] = ASSIGNED;
+            }
+            seeds[bucket] = seed;
+        }
+        return seeds;
+    }
+
+    private static int resetGenerations(int[] slots) {
+        for (int i = 0; i < slots.length; i++) {
+            if (slots[i] != ASSIGNED) {
+                slots[i] = 0;
+            }
+        }
+        return 1;
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2003-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.champeau.rigel.hash;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Storage for the second level seeds of a minimal perfect hash function,
+ * indexed by first level bucket.
+ */
+interface SeedTable {
+    int seed(int bucket);
+
+    /**
+     * Replaces the buckets of a range of an array with their seeds.
+     *
+     * @param buckets the buckets, replaced with their seeds
+     * @param from the first index, inclusive
+     * @param to the last index, exclusive
+     */
+    default void seeds(int[] buckets, int from, int to) {
+        for (int i = from; i < to; i++) {
+            buckets[i] = seed(buckets[i]);
+        }
+    }
+
+    /**
+     * @return the number of bits used to store the seeds
+     */
+    long sizeInBits();
+
+    /**
+     * Writes this table using the {@link MPHFile} format.
+     *
+     * @param out the output stream
+     * @throws IOException if an I/O error occurs
+     */
+    void writeTo(DataOutputStream out) throws IOException;
+}
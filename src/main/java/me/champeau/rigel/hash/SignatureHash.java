@@ -0,0 +1,57 @@
+/*
+ * Copyright 2003-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.champeau.rigel.hash;
+
+import me.champeau.rigel.hash.MPHBuilder.RandomizedHasher;
+
+/**
+ * A minimal perfect hash function built by {@link StreamingMPHBuilder}.
+ *
+ * @param <T> the type of hashed keys
+ */
+final class SignatureHash<T> implements MinimalPerfectHasher<T> {
+    private final RandomizedHasher<? super T> hasher;
+    private final SignatureTable table;
+
+    SignatureHash(RandomizedHasher<? super T> hasher, SignatureTable table) {
+        this.hasher = hasher;
+        this.table = table;
+    }
+
+    @Override
+    public int applyAsInt(T key) {
+        return table.slot(StreamingMPHBuilder.signature(key, hasher));
+    }
+
+    @Override
+    public int size() {
+        return table.size();
+    }
+
+    @Override
+    public double bitsPerKey() {
+        return table.bitsPerKey();
+    }
+
+    SignatureTable table() {
+        return table;
+    }
+
+    @Override
+    public String toString() {
+        return "Minimal Perfect Hash function for " + size() + " keys in " + table.partitions() + " partitions";
+    }
+}
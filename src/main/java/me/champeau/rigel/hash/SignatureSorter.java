@@ -0,0 +1,229 @@
+/*
+ * Copyright 2003-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.champeau.rigel.hash;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * An external sort of 64-bit signatures. Signatures are buffered in memory and,
+ * when the buffer is full, sorted and spilled to a temporary file as a sorted run.
+ * Runs are then merged while reading signatures back. Signatures are returned in
+ * unsigned order, duplicates included.
+ */
+final class SignatureSorter {
+    private static final int MIN_READ_BUFFER = 4096;
+    private static final int MAX_READ_BUFFER = 1 << 20;
+    private static final int INITIAL_BUFFER = 1024;
+
+    private final long memoryBudget;
+    private final Path tempDirectory;
+    private final List<Path> runs = new ArrayList<>();
+    private final List<Long> runSizes = new ArrayList<>();
+    private long[] buffer;
+    private int buffered;
+    private long count;
+
+    SignatureSorter(long memoryBudget, Path tempDirectory) {
+        this.memoryBudget = memoryBudget;
+        this.tempDirectory = tempDirectory;
+    }
+
+    void add(long signature) throws IOException {
+        if (buffer == null) {
+            buffer = new long[Math.min(INITIAL_BUFFER, capacity())];
+        }
+        if (buffered == buffer.length) {
+            // the buffer grows up to the memory budget, so that small inputs don't allocate all of it
+            int capacity = capacity();
+            if (buffer.length < capacity) {
+                buffer = Arrays.copyOf(buffer, (int) Math.min(capacity, 2L * buffer.length));
+            } else {
+                spill();
+            }
+        }
+        // flipping the sign bit makes signed order match unsigned order
+        buffer[buffered++] = signature ^ Long.MIN_VALUE;
+        count++;
+    }
+
+    /**
+     * @return the number of signatures which fit in the memory budget
+     */
+    private int capacity() {
+        return (int) Math.min(Integer.MAX_VALUE - 8, memoryBudget / 8);
+    }
+
+    long count() {
+        return count;
+    }
+
+    int runs() {
+        return runs.size();
+    }
+
+    private void spill() throws IOException {
+        Arrays.sort(buffer, 0, buffered);
+        Path run = tempDirectory == null ? Files.createTempFile("mph", ".run") : Files.createTempFile(tempDirectory, "mph", ".run");
+        runs.add(run);
+        runSizes.add((long) buffered);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(run), 1 << 16))) {
+            for (int i = 0; i < buffered; i++) {
+                out.writeLong(buffer[i]);
+            }
+        }
+        buffered = 0;
+    }
+
+    /**
+     * Sorts the signatures added so far. The returned cursor must be closed, which
+     * deletes the temporary files and resets this sorter.
+     */
+    Cursor sort() throws IOException {
+        if (runs.isEmpty()) {
+            if (buffer != null) {
+                Arrays.sort(buffer, 0, buffered);
+            }
+            return new BufferCursor();
+        }
+        if (buffered > 0) {
+            spill();
+        }
+        // the in-memory buffer is released, its memory being used for reading runs
+        buffer = null;
+        return new MergeCursor((int) Math.min(MAX_READ_BUFFER, Math.max(MIN_READ_BUFFER, memoryBudget / runs.size())));
+    }
+
+    private void reset() throws IOException {
+        buffer = null;
+        buffered = 0;
+        count = 0;
+        runSizes.clear();
+        IOException failure = null;
+        for (Path run : runs) {
+            try {
+                Files.deleteIfExists(run);
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        runs.clear();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    abstract class Cursor implements Closeable {
+        abstract boolean hasNext();
+
+        abstract long next() throws IOException;
+
+        @Override
+        public void close() throws IOException {
+            reset();
+        }
+    }
+
+    private final class BufferCursor extends Cursor {
+        private int position;
+
+        @Override
+        boolean hasNext() {
+            return position < buffered;
+        }
+
+        @Override
+        long next() {
+            return buffer[position++] ^ Long.MIN_VALUE;
+        }
+    }
+
+    private final class MergeCursor extends Cursor {
+        private final PriorityQueue<Run> queue = new PriorityQueue<>(Comparator.comparingLong(run -> run.head));
+        private final List<Run> open = new ArrayList<>();
+
+        MergeCursor(int bufferSize) throws IOException {
+            try {
+                for (int i = 0; i < runs.size(); i++) {
+                    Run run = new Run(runs.get(i), runSizes.get(i), bufferSize);
+                    open.add(run);
+                    run.advance();
+                    queue.add(run);
+                }
+            } catch (IOException e) {
+                close();
+                throw e;
+            }
+        }
+
+        @Override
+        boolean hasNext() {
+            return !queue.isEmpty();
+        }
+
+        @Override
+        long next() throws IOException {
+            Run run = queue.poll();
+            long signature = run.head ^ Long.MIN_VALUE;
+            if (run.advance()) {
+                queue.add(run);
+            }
+            return signature;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                for (Run run : open) {
+                    run.in.close();
+                }
+            } finally {
+                super.close();
+            }
+        }
+    }
+
+    private static final class Run {
+        private final DataInputStream in;
+        private long remaining;
+        private long head;
+
+        private Run(Path file, long size, int bufferSize) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), bufferSize));
+            this.remaining = size;
+        }
+
+        private boolean advance() throws IOException {
+            if (remaining == 0) {
+                return false;
+            }
+            remaining--;
+            head = in.readLong();
+            return true;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2003-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.champeau.rigel.hash;
+
+/**
+ * A minimal perfect hash function over 64-bit key signatures, as built by the
+ * streaming builders. Signatures are split into partitions using their high bits,
+ * then into first level buckets using their low bits, and the slot of a signature
+ * within its partition is given by a seeded hash of the whole signature.
+ *
+ * Since keys are only known by their signatures, two distinct keys with the same
+ * signature can't be told apart, which happens with a probability of about
+ * n^2 / 2^65 for n keys.
+ */
+final class SignatureTable {
+    static final int HIGH_SEED = -3;
+    static final int LOW_SEED = -4;
+
+    private final int[] offsets;
+    private final int[] bucketOffsets;
+    private final SeedTable[] seeds;
+
+    SignatureTable(int[] offsets, int[] bucketOffsets, SeedTable[] seeds) {
+        this.offsets = offsets;
+        this.bucketOffsets = bucketOffsets;
+        this.seeds = seeds;
+    }
+
+    static long signature(int high, int low) {
+        return (long) high << 32 | (low & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Partitions are ordered like signatures compared as unsigned integers
+     */
+    static int partition(long signature, int partitions) {
+        return Hashers.reduce((int) (signature >>> 32), partitions);
+    }
+
+    static int bucket(long signature, int buckets) {
+        return Hashers.reduce((int) signature, buckets);
+    }
+
+    static int position(long signature, int seed, int size) {
+        return Hashers.reduce(Hashers.hash(signature, seed), size);
+    }
+
+    int slot(long signature) {
+        int p = partition(signature, seeds.length);
+        int offset = offsets[p];
+        int size = offsets[p + 1] - offset;
+        if (size == 0) {
+            // empty partition, only reachable for keys which were not in the key set
+            return 0;
+        }
+        int bucket = bucket(signature, bucketOffsets[p + 1] - bucketOffsets[p]);
+        return offset + position(signature, seeds[p].seed(bucket), size);
+    }
+
+    int size() {
+        return offsets[seeds.length];
+    }
+
+    double bitsPerKey() {
+        int size = size();
+        if (size == 0) {
+            return 0;
+        }
+        double bits = 64d * offsets.length;
+        for (SeedTable table : seeds) {
+            bits += table.sizeInBits();
+        }
+        return bits / size;
+    }
+
+    int partitions() {
+        return seeds.length;
+    }
+
+    int[] offsets() {
+        return offsets;
+    }
+
+    int[] bucketOffsets() {
+        return bucketOffsets;
+    }
+
+    SeedTable[] seeds() {
+        return seeds;
+    }
+}
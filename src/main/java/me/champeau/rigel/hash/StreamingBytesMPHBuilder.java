@@ -0,0 +1,119 @@
+/*
+ * Copyright 2003-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.champeau.rigel.hash;
+
+import me.champeau.rigel.hash.BytesMPHBuilder.BytesRandomizedHasher;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ * A {@link StreamingMPHBuilder} specialized for byte array keys, which can also read
+ * keys directly from a channel, for example a multi-gigabyte file of newline
+ * separated keys, without creating one object per key.
+ */
+public class StreamingBytesMPHBuilder extends AbstractStreamingMPHBuilder<StreamingBytesMPHBuilder> {
+    private static final int READ_BUFFER_SIZE = 1 << 16;
+
+    private final BytesRandomizedHasher hasher;
+
+    public StreamingBytesMPHBuilder(BytesRandomizedHasher hasher) {
+        this.hasher = hasher;
+    }
+
+    @Override
+    StreamingBytesMPHBuilder self() {
+        return this;
+    }
+
+    static long signature(byte[] data, int offset, int length, BytesRandomizedHasher hasher) {
+        return SignatureTable.signature(
+                hasher.hash(data, offset, length, SignatureTable.HIGH_SEED),
+                hasher.hash(data, offset, length, SignatureTable.LOW_SEED));
+    }
+
+    public void add(byte[] key) throws IOException {
+        add(key, 0, key.length);
+    }
+
+    public void add(byte[] key, int offset, int length) throws IOException {
+        addSignature(signature(key, offset, length, hasher));
+    }
+
+    public void addAll(Iterator<byte[]> keys) throws IOException {
+        while (keys.hasNext()) {
+            add(keys.next());
+        }
+    }
+
+    /**
+     * Reads keys separated by the given delimiter until the end of the channel. Empty
+     * keys are ignored, and the channel is not closed.
+     *
+     * @param channel the channel to read keys from
+     * @param delimiter the byte separating keys, typically '\n'
+     * @throws IOException if the channel can't be read or signatures can't be spilled to disk
+     */
+    public void addAll(ReadableByteChannel channel, byte delimiter) throws IOException {
+        byte[] data = new byte[READ_BUFFER_SIZE];
+        int end = 0;
+        boolean eof = false;
+        while (!eof) {
+            int read = channel.read(ByteBuffer.wrap(data, end, data.length - end));
+            eof = read < 0;
+            int from = end;
+            end += Math.max(0, read);
+            int start = 0;
+            for (int i = from; i < end; i++) {
+                if (data[i] == delimiter) {
+                    if (i > start) {
+                        add(data, start, i - start);
+                    }
+                    start = i + 1;
+                }
+            }
+            if (eof) {
+                if (end > start) {
+                    add(data, start, end - start);
+                }
+            } else if (start == 0 && end == data.length) {
+                // a key larger than the buffer
+                data = Arrays.copyOf(data, 2 * data.length);
+            } else if (start > 0) {
+                System.arraycopy(data, start, data, 0, end - start);
+                end -= start;
+            }
+        }
+    }
+
+    /**
+     * Builds a minimal perfect hash function of the keys added so far, then resets
+     * this builder. Keys are only known by their 64-bit signatures, so distinct keys
+     * with the same signature are discarded like duplicate keys: with n keys, this
+     * happens with a probability of about n^2 / 2^65, and {@link BytesMinimalPerfectHasher#size()} of the
+     * result is then smaller than the number of distinct keys. The number of discarded
+     * signatures is reported by {@link #stats()}.
+     *
+     * @return the hash function
+     * @throws IOException if temporary files can't be read
+     */
+    public BytesMinimalPerfectHasher build() throws IOException {
+        return new BytesSignatureHash(hasher, buildTable());
+    }
+}
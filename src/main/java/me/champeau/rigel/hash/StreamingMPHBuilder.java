@@ -0,0 +1,87 @@
+/*
+ * Copyright 2003-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.champeau.rigel.hash;
+
+import me.champeau.rigel.hash.MPHBuilder.RandomizedHasher;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * A minimal perfect hash function builder for key sets which don't fit in memory.
+ * Keys are not retained: each key is hashed into a 64-bit signature when it is added,
+ * and signatures are sorted using temporary files when they exceed the configured
+ * memory budget. Duplicate keys are ignored.
+ *
+ * The built hash function computes two seeded hashes of the key per lookup, and
+ * two distinct keys may collide with a probability of about n^2 / 2^65.
+ *
+ * The builder is reset after {@link #build()}, and can then be used for a new key set.
+ *
+ * @param <T> the type of data to hash
+ */
+public class StreamingMPHBuilder<T> extends AbstractStreamingMPHBuilder<StreamingMPHBuilder<T>> {
+    private final RandomizedHasher<? super T> hasher;
+
+    public StreamingMPHBuilder(RandomizedHasher<? super T> hasher) {
+        this.hasher = hasher;
+    }
+
+    @Override
+    StreamingMPHBuilder<T> self() {
+        return this;
+    }
+
+    static <T> long signature(T key, RandomizedHasher<? super T> hasher) {
+        return SignatureTable.signature(hasher.hash(key, SignatureTable.HIGH_SEED), hasher.hash(key, SignatureTable.LOW_SEED));
+    }
+
+    public void add(T key) throws IOException {
+        addSignature(signature(key, hasher));
+    }
+
+    public void addAll(Iterator<? extends T> keys) throws IOException {
+        while (keys.hasNext()) {
+            add(keys.next());
+        }
+    }
+
+    /**
+     * Adds all keys of a stream. The stream is consumed but not closed.
+     *
+     * @param keys the keys
+     * @throws IOException if signatures can't be spilled to disk
+     */
+    public void addAll(Stream<? extends T> keys) throws IOException {
+        addAll(keys.iterator());
+    }
+
+    /**
+     * Builds a minimal perfect hash function of the keys added so far, then resets
+     * this builder. Keys are only known by their 64-bit signatures, so distinct keys
+     * with the same signature are discarded like duplicate keys: with n keys, this
+     * happens with a probability of about n^2 / 2^65, and {@link MinimalPerfectHasher#size()} of the
+     * result is then smaller than the number of distinct keys. The number of discarded
+     * signatures is reported by {@link #stats()}.
+     *
+     * @return the hash function
+     * @throws IOException if temporary files can't be read
+     */
+    public MinimalPerfectHasher<T> build() throws IOException {
+        return new SignatureHash<>(hasher, buildTable());
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright 2003-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.champeau.rigel.hash;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+
+/**
+ * An off-heap store of variable length byte values. Values are stored contiguously
+ * in slot order, after an array of offsets: the value of a slot spans from its offset
+ * to the offset of the next slot. Slots without a value have an empty value.
+ *
+ * Stores are created using a {@link Builder}, which accepts values in any order.
+ */
+public final class VariableLengthValues extends OffHeapValues {
+    private final IntBuffer offsets;
+    private final ByteBuffer data;
+    private final int slots;
+
+    private VariableLengthValues(IntBuffer offsets, ByteBuffer data, int slots) {
+        this.offsets = offsets;
+        this.data = data;
+        this.slots = slots;
+    }
+
+    public static Builder builder(int slots) {
+        return new Builder(slots);
+    }
+
+    static VariableLengthValues read(ByteBuffer file, int slots, int dataLength) {
+        int offsetsLength = Math.multiplyExact(slots + 1, 4);
+        ByteBuffer offsets = slice(file, HEADER_SIZE, offsetsLength);
+        if (offsets.getInt(4 * slots) != dataLength) {
+            throw new IllegalArgumentException("Inconsistent data length");
+        }
+        ByteBuffer data = slice(file, HEADER_SIZE + offsetsLength, dataLength);
+        return new VariableLengthValues(offsets.asIntBuffer(), data.asReadOnlyBuffer(), slots);
+    }
+
+    @Override
+    public int size() {
+        return slots;
+    }
+
+    @Override
+    public int length(int slot) {
+        return offsets.get(slot + 1) - offsets.get(slot);
+    }
+
+    @Override
+    public ByteBuffer get(int slot) {
+        int from = offsets.get(slot);
+        return slice(data, from, offsets.get(slot + 1) - from).asReadOnlyBuffer();
+    }
+
+    @Override
+    public int get(int slot, byte[] dst, int offset) {
+        int from = offsets.get(slot);
+        int length = offsets.get(slot + 1) - from;
+        ByteBuffer view = data.duplicate();
+        ((Buffer) view).position(from);
+        view.get(dst, offset, length);
+        return length;
+    }
+
+    @Override
+    void writeHeader(ByteBuffer header) {
+        header.putInt(VARIABLE_LENGTH);
+        header.putInt(slots);
+        header.putInt(data.capacity());
+    }
+
+    @Override
+    ByteBuffer content() {
+        ByteBuffer content = ByteBuffer.allocateDirect(4 * (slots + 1) + data.capacity());
+        for (int i = 0; i <= slots; i++) {
+            content.putInt(offsets.get(i));
+        }
+        ByteBuffer values = data.duplicate();
+        ((Buffer) values).clear();
+        content.put(values);
+        ((Buffer) content).flip();
+        return content;
+    }
+
+    @Override
+    public String toString() {
+        return "Off-heap store of " + slots + " values, " + data.capacity() + " bytes";
+    }
+
+    /**
+     * Collects values in any order, in a direct buffer, then lays them out in
+     * slot order when building. Putting a value twice for the same slot replaces it.
+     */
+    public static final class Builder {
+        private final int slots;
+        private final int[] starts;
+        private final int[] lengths;
+        private ByteBuffer data = ByteBuffer.allocateDirect(64 << 10);
+        private long totalLength;
+
+        private Builder(int slots) {
+            if (slots < 0) {
+                throw new IllegalArgumentException("Number of slots must be positive");
+            }
+            this.slots = slots;
+            this.starts = new int[slots];
+            this.lengths = new int[slots];
+        }
+
+        public Builder put(int slot, byte[] value) {
+            return put(slot, value, 0, value.length);
+        }
+
+        public Builder put(int slot, byte[] value, int offset, int length) {
+            int start = reserve(slot, length);
+            data.put(value, offset, length);
+            record(slot, start, length);
+            return this;
+        }
+
+        /**
+         * Copies the remaining bytes of a buffer, without changing its position.
+         *
+         * @param slot the slot of the value
+         * @param value the value
+         * @return this builder
+         */
+        public Builder put(int slot, ByteBuffer value) {
+            int start = reserve(slot, value.remaining());
+            data.put(value.duplicate());
+            record(slot, start, value.remaining());
+            return this;
+        }
+
+        private int reserve(int slot, int length) {
+            if (slot < 0 || slot >= slots) {
+                throw new IndexOutOfBoundsException("Slot " + slot + " is out of bounds for " + slots + " slots");
+            }
+            if (data.remaining() < length) {
+                long required = (long) data.position() + length;
+                if (required > Integer.MAX_VALUE) {
+                    throw new IllegalStateException("Value store is limited to 2GB");
+                }
+                ByteBuffer grown = ByteBuffer.allocateDirect((int) Math.min(Integer.MAX_VALUE, Math.max(2L * data.capacity(), required)));
+                ((Buffer) data).flip();
+                grown.put(data);
+                data = grown;
+            }
+            return data.position();
+        }
+
+        private void record(int slot, int start, int length) {
+            totalLength += length - lengths[slot];
+            starts[slot] = start;
+            lengths[slot] = length;
+        }
+
+        public VariableLengthValues build() {
+            if (totalLength + 4L * (slots + 1) + HEADER_SIZE > Integer.MAX_VALUE) {
+                throw new IllegalStateException("Value store is limited to 2GB");
+            }
+            ByteBuffer offsetBuffer = ByteBuffer.allocateDirect(4 * (slots + 1));
+            ByteBuffer values = ByteBuffer.allocateDirect((int) totalLength);
+            ByteBuffer source = data.duplicate();
+            for (int slot = 0; slot < slots; slot++) {
+                offsetBuffer.putInt(values.position());
+                int length = lengths[slot];
+                if (length > 0) {
+                    ((Buffer) source).limit(starts[slot] + length);
+                    ((Buffer) source).position(starts[slot]);
+                    values.put(source);
+                }
+            }
+            offsetBuffer.putInt(values.position());
+            ((Buffer) offsetBuffer).clear();
+            ((Buffer) values).clear();
+            return new VariableLengthValues(offsetBuffer.asIntBuffer(), values.asReadOnlyBuffer(), slots);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2003-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.champeau.rigel.lazy;
+
+import java.util.concurrent.CompletionStage;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * A lazy wrapper which computes its value asynchronously, on an executor. The value
+ * can be consumed without blocking using {@link #toCompletionStage()}, while
+ * {@link #get()} blocks until the value is available.
+ *
+ * Unlike the other lazy wrappers, a failed computation isn't retried: the
+ * exception is rethrown by {@link #get()} and completes the stage exceptionally.
+ *
+ * @param <T> the type of the lazy value
+ * @see Lazy#async(java.util.concurrent.Executor)
+ */
+public interface AsyncLazy<T> extends Lazy<T> {
+
+    /**
+     * Starts the computation if it isn't started yet, without blocking.
+     *
+     * @return a stage completed with the lazy value
+     */
+    CompletionStage<T> toCompletionStage();
+
+    /**
+     * @return true if the value has been computed, whether successfully or not
+     */
+    boolean isDone();
+
+    /**
+     * Creates another asynchronous lazy wrapper which, when needed, will apply
+     * the supplied function to the lazily computed value once available. Neither
+     * wrapper is computed until the new one is.
+     *
+     * @param mapper the mapping function
+     * @param <V> the type of the result of the function
+     * @return a new asynchronous lazy wrapper
+     */
+    @Override
+    <V> AsyncLazy<V> map(Function<? super T, V> mapper);
+
+    /**
+     * Creates another asynchronous lazy wrapper which, when needed, will apply
+     * the supplied function to the lazily computed value once available, then
+     * complete with the value of the lazy wrapper it returns. If that wrapper is
+     * asynchronous, its value is awaited without blocking.
+     *
+     * @param mapper the mapping function
+     * @param <V> the type of the value of the resulting lazy wrapper
+     * @return a new asynchronous lazy wrapper
+     */
+    @Override
+    <V> AsyncLazy<V> flatMap(Function<? super T, ? extends Lazy<V>> mapper);
+
+    /**
+     * Creates another asynchronous lazy wrapper which, when needed, will combine
+     * the lazily computed value with the value of another lazy wrapper. If the
+     * other wrapper is asynchronous, both values are computed concurrently.
+     *
+     * @param other the other lazy wrapper
+     * @param combiner the function combining both values
+     * @param <U> the type of the value of the other lazy wrapper
+     * @param <V> the type of the result of the function
+     * @return a new asynchronous lazy wrapper
+     */
+    @Override
+    <U, V> AsyncLazy<V> zip(Lazy<U> other, BiFunction<? super T, ? super U, V> combiner);
+
+    interface Factory extends Lazy.Factory {
+        /**
+         * Creates an asynchronous lazy wrapper which computes its value on the
+         * first access.
+         */
+        @Override
+        <T> AsyncLazy<T> of(Supplier<T> supplier);
+
+        @Override
+        default <T> AsyncLazy<T> of(Supplier<T> supplier, Function<? super Throwable, ? extends T> fallback) {
+            return of(new FailureAwareSupplier<>(supplier, FailurePolicy.fallback(fallback)));
+        }
+
+        /**
+         * Creates an asynchronous lazy wrapper which starts computing its value
+         * immediately, so that it can be ready when it is first needed.
+         */
+        <T> AsyncLazy<T> eager(Supplier<T> supplier);
+    }
+}
@@ -16,7 +16,14 @@
 package me.champeau.rigel.lazy;
 
 /**
- * A dummy class so that the Java compiler is happy
+ * Thrown to the readers of a value whose computation failed in another call: by a
+ * lazy wrapper while the failure of its supplier is cached, as set by a
+ * {@link FailurePolicy}, or by a {@link LazyCache} to the threads which were waiting
+ * for a failed load. Each reader gets its own exception, whose cause is the
+ * exception thrown by the supplier or the loader.
  */
-class Beacon {
+public class CachedFailureException extends RuntimeException {
+    CachedFailureException(Throwable cause) {
+        super("The lazy value failed to initialize: " + cause, cause);
+    }
 }
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2003-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.champeau.rigel.lazy;
+
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * A lazy wrapper which checks the cached failure of its supplier before reading
+ * another lazy wrapper, so that readers don't wait for its lock while the failure
+ * is cached. Once the value is computed, reading costs an extra volatile read.
+ */
+final class FailureAwareLazy<T> implements Lazy<T> {
+    private final FailureAwareSupplier<?> supplier;
+    private final Lazy<T> delegate;
+
+    FailureAwareLazy(FailureAwareSupplier<?> supplier, Lazy<T> delegate) {
+        this.supplier = supplier;
+        this.delegate = delegate;
+    }
+
+    @Override
+    public T get() {
+        supplier.checkCachedFailure();
+        return delegate.get();
+    }
+
+    @Override
+    public void use(Consumer<? super T> consumer) {
+        consumer.accept(get());
+    }
+
+    @Override
+    public <V> V apply(Function<? super T, V> function) {
+        return function.apply(get());
+    }
+
+    // derived lazy wrappers can't be computed while the failure of their source is cached
+
+    @Override
+    public <V> Lazy<V> map(Function<? super T, V> mapper) {
+        return new FailureAwareLazy<>(supplier, delegate.map(mapper));
+    }
+
+    @Override
+    public <V> Lazy<V> flatMap(Function<? super T, ? extends Lazy<V>> mapper) {
+        return new FailureAwareLazy<>(supplier, delegate.flatMap(mapper));
+    }
+
+    @Override
+    public <U, V> Lazy<V> zip(Lazy<U> other, BiFunction<? super T, ? super U, V> combiner) {
+        return new FailureAwareLazy<>(supplier, delegate.zip(other, combiner));
+    }
+}
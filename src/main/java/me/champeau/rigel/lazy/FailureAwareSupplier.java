@@ -0,0 +1,74 @@
+/*
+ * Copyright 2003-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.champeau.rigel.lazy;
+
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * A supplier which applies a failure policy to another supplier.
+ */
+final class FailureAwareSupplier<T> implements Supplier<T> {
+    private final Supplier<T> supplier;
+    private final FailurePolicy policy;
+    // an unchecked exception or an error
+    private volatile Throwable cachedFailure;
+    private volatile long retryAt;
+    // consecutive failures, only updated by the thread calling the supplier
+    private int failures;
+
+    FailureAwareSupplier(Supplier<T> supplier, FailurePolicy policy) {
+        this.supplier = supplier;
+        this.policy = policy;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T get() {
+        checkCachedFailure();
+        try {
+            T value = supplier.get();
+            failures = 0;
+            if (cachedFailure != null) {
+                cachedFailure = null;
+            }
+            return value;
+        } catch (RuntimeException | Error e) {
+            Function<? super Throwable, ?> fallback = policy.fallback();
+            if (fallback != null) {
+                return (T) fallback.apply(e);
+            }
+            long delay = policy.delay(++failures);
+            if (delay > 0) {
+                retryAt = System.nanoTime() + delay;
+                cachedFailure = e;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Throws a new exception, caused by the cached failure, if it is still cached.
+     * Sharing the cached exception would mix the stack traces and suppressed
+     * exceptions of all the readers.
+     */
+    void checkCachedFailure() {
+        Throwable failure = cachedFailure;
+        if (failure != null && System.nanoTime() - retryAt < 0) {
+            throw new CachedFailureException(failure);
+        }
+    }
+}
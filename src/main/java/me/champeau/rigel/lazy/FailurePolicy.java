@@ -0,0 +1,122 @@
+/*
+ * Copyright 2003-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.champeau.rigel.lazy;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * Describes what lazy wrappers do when their supplier throws an exception. By
+ * default, the exception is propagated and the supplier is called again on the next
+ * access, so a failing supplier is called by every reader. A policy is applied to
+ * a factory using {@link Lazy.Factory#withFailurePolicy(FailurePolicy)}.
+ *
+ * While a failure is cached, readers get a {@link CachedFailureException}, caused by
+ * the cached exception, without calling the supplier nor waiting for the lock of the
+ * lazy wrapper. Since the supplier is only called by the thread initializing the lazy
+ * wrapper, a single thread retries, provided the factory is thread safe. Refreshing
+ * lazy wrappers keep serving their stale value instead, see
+ * {@link RefreshableLazy.Factory#withFailurePolicy(FailurePolicy)}.
+ */
+public final class FailurePolicy {
+    private final long initialDelay;
+    private final long maxDelay;
+    private final Function<? super Throwable, ?> fallback;
+
+    private FailurePolicy(long initialDelay, long maxDelay, Function<? super Throwable, ?> fallback) {
+        this.initialDelay = initialDelay;
+        this.maxDelay = maxDelay;
+        this.fallback = fallback;
+    }
+
+    /**
+     * The exception is propagated and the supplier is called again on the next access.
+     */
+    public static FailurePolicy retry() {
+        return new FailurePolicy(0, 0, null);
+    }
+
+    /**
+     * The exception is cached: readers get an exception caused by it for the given
+     * duration, after which the supplier is called again.
+     *
+     * @param duration how long the exception is cached
+     * @return a failure policy
+     */
+    public static FailurePolicy cacheFor(Duration duration) {
+        long nanos = positive(duration);
+        return new FailurePolicy(nanos, nanos, null);
+    }
+
+    /**
+     * The exception is cached, for a duration which doubles after each consecutive
+     * failure, starting at the initial delay and bounded by the maximum delay.
+     *
+     * @param initialDelay how long the first exception is cached
+     * @param maxDelay the maximum duration an exception is cached
+     * @return a failure policy
+     */
+    public static FailurePolicy retryWithBackoff(Duration initialDelay, Duration maxDelay) {
+        long initial = positive(initialDelay);
+        long max = positive(maxDelay);
+        if (max < initial) {
+            throw new IllegalArgumentException("Maximum delay must not be shorter than the initial delay");
+        }
+        return new FailurePolicy(initial, max, null);
+    }
+
+    /**
+     * The value returned by the fallback function, given the exception, becomes the
+     * lazy value.
+     *
+     * Beware that the fallback value isn't type checked: since a policy applies
+     * to all the lazy wrappers of a factory, the function must return values of the
+     * types of all of them, otherwise the mismatch only shows up as a
+     * {@link ClassCastException} in the code reading the value. To fall back on a
+     * value of the type of a single lazy wrapper, prefer
+     * {@link Lazy.Factory#of(java.util.function.Supplier, Function)}.
+     *
+     * @param fallback the function computing a fallback value
+     * @return a failure policy
+     */
+    public static FailurePolicy fallback(Function<? super Throwable, ?> fallback) {
+        return new FailurePolicy(0, 0, Objects.requireNonNull(fallback));
+    }
+
+    private static long positive(Duration duration) {
+        if (duration.isNegative() || duration.isZero()) {
+            throw new IllegalArgumentException("Duration must be positive");
+        }
+        return duration.toNanos();
+    }
+
+    Function<? super Throwable, ?> fallback() {
+        return fallback;
+    }
+
+    /**
+     * @return how long the exception is cached after the given number of consecutive failures
+     */
+    long delay(int failures) {
+        if (initialDelay == 0) {
+            return 0;
+        }
+        int doublings = Math.min(failures - 1, 62);
+        long delay = initialDelay << doublings;
+        return delay <= 0 || delay >>> doublings != initialDelay ? maxDelay : Math.min(delay, maxDelay);
+    }
+}
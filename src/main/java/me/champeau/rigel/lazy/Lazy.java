@@ -15,10 +15,17 @@
  */
 package me.champeau.rigel.lazy;
 
+import me.champeau.rigel.lazy.internal.CompletableLazy;
+import me.champeau.rigel.lazy.internal.InstrumentedLazy;
+import me.champeau.rigel.lazy.internal.LockFreeLazy;
 import me.champeau.rigel.lazy.internal.LockingLazy;
+import me.champeau.rigel.lazy.internal.RefreshingLazy;
 import me.champeau.rigel.lazy.internal.SynchronizedLazy;
 import me.champeau.rigel.lazy.internal.UnsafeLazy;
 
+import java.time.Duration;
+import java.util.concurrent.Executor;
+import java.util.function.BiFunction;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Supplier;
@@ -30,6 +37,9 @@
  * <ul>
  *     <li>{@link #unsafe()} would create a lazy wrapper which performs no synchronization at all when calling the supplier: it may be called several times concurrently by different threads. Not thread safe!</li>
  *     <li>{@link #locking()} would create a lazy wrapper which performs locking when calling the supplier: the supplier will only be called once. Reading is done without locking once initialized.</li>
+ *     <li>{@link #lockFree()} would create a lazy wrapper which calls the supplier only once, without locking: other threads are parked until the value is available, and reading is a single volatile read once initialized.</li>
+ *     <li>{@link #async(Executor)} would create a lazy wrapper which calls the supplier on an executor, and whose value can be consumed without blocking, as a completion stage.</li>
+ *     <li>{@link #refreshing(Duration, Executor)} would create a lazy wrapper whose value expires, then is recomputed on an executor while readers keep getting the previous value.</li>
  * </ul>
  *
  * @param <T> the type of the lazy value
@@ -69,6 +79,33 @@ default <V> Lazy<V> map(Function<? super T, V> mapper) {
         return unsafe().of(() -> mapper.apply(get()));
     }
 
+    /**
+     * Creates another lazy wrapper which will eventually apply the supplied
+     * function to the lazily computed value, and return the value of the lazy
+     * wrapper it returns
+     *
+     * @param mapper the mapping function
+     * @param <V> the type of the value of the resulting lazy wrapper
+     * @return a new lazy wrapper
+     */
+    default <V> Lazy<V> flatMap(Function<? super T, ? extends Lazy<V>> mapper) {
+        return unsafe().of(() -> mapper.apply(get()).get());
+    }
+
+    /**
+     * Creates another lazy wrapper which will eventually combine the lazily
+     * computed value with the value of another lazy wrapper
+     *
+     * @param other the other lazy wrapper
+     * @param combiner the function combining both values
+     * @param <U> the type of the value of the other lazy wrapper
+     * @param <V> the type of the result of the function
+     * @return a new lazy wrapper
+     */
+    default <U, V> Lazy<V> zip(Lazy<U> other, BiFunction<? super T, ? super U, V> combiner) {
+        return unsafe().of(() -> combiner.apply(get(), other.get()));
+    }
+
     static Factory unsafe() {
         return UnsafeLazy::new;
     }
@@ -81,8 +118,64 @@ static Factory synchronizing() {
         return SynchronizedLazy::new;
     }
 
+    static Factory lockFree() {
+        return LockFreeLazy::new;
+    }
+
+    static AsyncLazy.Factory async(Executor executor) {
+        return CompletableLazy.factory(executor);
+    }
+
+    static RefreshableLazy.Factory refreshing(Duration timeToLive, Executor executor) {
+        return RefreshingLazy.factory(timeToLive, executor);
+    }
+
     interface Factory {
         <T> Lazy<T> of(Supplier<T> supplier);
+
+        /**
+         * Creates a lazy wrapper whose value is computed by a fallback function, given
+         * the exception, if the supplier fails. Unlike a {@link FailurePolicy#fallback(Function)}
+         * policy, the type of the fallback value is checked by the compiler.
+         *
+         * @param supplier the supplier of the value
+         * @param fallback the function computing a fallback value
+         * @param <T> the type of the lazy value
+         * @return a new lazy wrapper
+         */
+        default <T> Lazy<T> of(Supplier<T> supplier, Function<? super Throwable, ? extends T> fallback) {
+            return of(new FailureAwareSupplier<>(supplier, FailurePolicy.fallback(fallback)));
+        }
+
+        /**
+         * Returns a factory of lazy wrappers created by this factory, which report
+         * their initialization to a listener. Lazy wrappers created by this factory
+         * are not affected, so there's no overhead without instrumentation.
+         *
+         * @param listener the listener
+         * @return an instrumented factory
+         */
+        default Factory instrumented(LazyListener listener) {
+            return InstrumentedLazy.factory(this, listener);
+        }
+
+        /**
+         * Returns a factory of lazy wrappers created by this factory, which handle
+         * the failures of their supplier according to a policy.
+         *
+         * @param policy the failure policy
+         * @return a factory applying the failure policy
+         */
+        default Factory withFailurePolicy(FailurePolicy policy) {
+            Factory factory = this;
+            return new Factory() {
+                @Override
+                public <T> Lazy<T> of(Supplier<T> supplier) {
+                    FailureAwareSupplier<T> failureAware = new FailureAwareSupplier<>(supplier, policy);
+                    return new FailureAwareLazy<>(failureAware, factory.of(failureAware));
+                }
+            };
+        }
     }
 
 }
@@ -0,0 +1,288 @@
+/*
+ * Copyright 2003-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.champeau.rigel.lazy;
+
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * A concurrent memoizer: the keyed counterpart of {@link Lazy}. The value of a key
+ * is computed by the loader the first time it is requested, and the loader is called
+ * at most once per key while the key is in the cache, other threads requesting the
+ * same key waiting for the value. Reading a cached value doesn't lock.
+ *
+ * The number of cached keys is bounded: when it is exceeded, keys are evicted using
+ * the CLOCK policy, an approximation of least recently used. Each key has a reference
+ * bit which is set when it is read, and the eviction hand goes through the keys in
+ * insertion order, evicting the first key whose bit isn't set while clearing the bits
+ * it passes, so that recently used keys get a second chance. Eviction happens on the
+ * thread which inserts a key, unless another thread is already evicting.
+ *
+ * If the loader throws an exception, the key is removed so that a later request
+ * calls the loader again. Threads which were already waiting for the value get a
+ * {@link CachedFailureException} caused by the exception of the loader.
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the values
+ */
+public final class LazyCache<K, V> {
+    private final int maximumSize;
+    private final Function<? super K, ? extends V> loader;
+    private final ConcurrentHashMap<K, Node<K, V>> nodes = new ConcurrentHashMap<>();
+    // the clock, in insertion order. It may contain removed nodes, which are skipped.
+    private final ConcurrentLinkedQueue<Node<K, V>> clock = new ConcurrentLinkedQueue<>();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    // number of removed nodes which may still be in the clock
+    private final AtomicInteger removed = new AtomicInteger();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder loadFailures = new LongAdder();
+    private final LongAdder totalLoadTime = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private LazyCache(int maximumSize, Function<? super K, ? extends V> loader) {
+        this.maximumSize = maximumSize;
+        this.loader = loader;
+    }
+
+    /**
+     * Creates a cache which holds at most the given number of keys.
+     *
+     * @param maximumSize the maximum number of keys
+     * @param loader the function computing the value of a key
+     * @param <K> the type of the keys
+     * @param <V> the type of the values
+     * @return a new cache
+     */
+    public static <K, V> LazyCache<K, V> of(int maximumSize, Function<? super K, ? extends V> loader) {
+        if (maximumSize < 1) {
+            throw new IllegalArgumentException("Maximum size must be positive");
+        }
+        return new LazyCache<>(maximumSize, Objects.requireNonNull(loader));
+    }
+
+    /**
+     * Returns the value of a key, calling the loader if the key isn't cached yet.
+     *
+     * @param key the key
+     * @return the value of the key
+     */
+    public V get(K key) {
+        Node<K, V> node = nodes.get(key);
+        if (node != null) {
+            hits.increment();
+            if (!node.referenced) {
+                node.referenced = true;
+            }
+            return node.value.get();
+        }
+        return load(key);
+    }
+
+    private V load(K key) {
+        Node<K, V> node = new Node<>(key);
+        node.value = Lazy.lockFree().of(() -> compute(node));
+        Node<K, V> existing = nodes.putIfAbsent(key, node);
+        if (existing != null) {
+            hits.increment();
+            return existing.value.get();
+        }
+        misses.increment();
+        clock.add(node);
+        if (nodes.size() > maximumSize) {
+            evict();
+        }
+        return node.value.get();
+    }
+
+    private V compute(Node<K, V> node) {
+        Throwable failure = node.failure;
+        if (failure != null) {
+            // a waiter woken up by the failed load: the node was removed, so it must not load again
+            throw new CachedFailureException(failure);
+        }
+        long start = System.nanoTime();
+        try {
+            return loader.apply(node.key);
+        } catch (RuntimeException | Error e) {
+            node.failure = e;
+            loadFailures.increment();
+            if (nodes.remove(node.key, node)) {
+                onRemoval();
+            }
+            throw e;
+        } finally {
+            totalLoadTime.add(System.nanoTime() - start);
+        }
+    }
+
+    private void evict() {
+        if (!evictionLock.tryLock()) {
+            // another thread is evicting
+            return;
+        }
+        try {
+            while (nodes.size() > maximumSize) {
+                Node<K, V> node = clock.poll();
+                if (node == null) {
+                    // keys inserted while the cache was cleared may be missing from the clock
+                    clock.addAll(nodes.values());
+                    continue;
+                }
+                if (nodes.get(node.key) != node) {
+                    // already removed
+                    continue;
+                }
+                if (node.referenced) {
+                    node.referenced = false;
+                    clock.add(node);
+                } else if (nodes.remove(node.key, node)) {
+                    evictions.increment();
+                }
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Returns a lazy wrapper of the value of a key, which reads the cache when its
+     * value is needed.
+     *
+     * @param key the key
+     * @return a lazy value
+     */
+    public Lazy<V> lazy(K key) {
+        return Lazy.lockFree().of(() -> get(key));
+    }
+
+    /**
+     * Removes a key, so that the next request calls the loader again.
+     *
+     * @param key the key
+     */
+    public void invalidate(K key) {
+        if (nodes.remove(key) != null) {
+            onRemoval();
+        }
+    }
+
+    public void invalidateAll() {
+        nodes.clear();
+        clock.clear();
+    }
+
+    private void onRemoval() {
+        if (removed.incrementAndGet() > maximumSize && evictionLock.tryLock()) {
+            try {
+                removed.set(0);
+                clock.removeIf(node -> nodes.get(node.key) != node);
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * @return the number of cached keys
+     */
+    public int size() {
+        return nodes.size();
+    }
+
+    /**
+     * @return a snapshot of the statistics of this cache
+     */
+    public Stats stats() {
+        return new Stats(hits.sum(), misses.sum(), loadFailures.sum(), totalLoadTime.sum(), evictions.sum());
+    }
+
+    private static final class Node<K, V> {
+        private final K key;
+        private Lazy<V> value;
+        private volatile boolean referenced;
+        private volatile Throwable failure;
+
+        private Node(K key) {
+            this.key = key;
+        }
+    }
+
+    /**
+     * Statistics of a cache. A miss is counted each time the loader is called.
+     */
+    public static final class Stats {
+        private final long hits;
+        private final long misses;
+        private final long loadFailures;
+        private final long totalLoadTime;
+        private final long evictions;
+
+        private Stats(long hits, long misses, long loadFailures, long totalLoadTime, long evictions) {
+            this.hits = hits;
+            this.misses = misses;
+            this.loadFailures = loadFailures;
+            this.totalLoadTime = totalLoadTime;
+            this.evictions = evictions;
+        }
+
+        public long hits() {
+            return hits;
+        }
+
+        public long misses() {
+            return misses;
+        }
+
+        public long loadFailures() {
+            return loadFailures;
+        }
+
+        /**
+         * @return the total time spent in the loader, in nanoseconds
+         */
+        public long totalLoadTime() {
+            return totalLoadTime;
+        }
+
+        public long evictions() {
+            return evictions;
+        }
+
+        public double hitRate() {
+            long requests = hits + misses;
+            return requests == 0 ? 1 : (double) hits / requests;
+        }
+
+        /**
+         * @return the average time spent in the loader, in nanoseconds
+         */
+        public double averageLoadTime() {
+            return misses == 0 ? 0 : (double) totalLoadTime / misses;
+        }
+
+        @Override
+        public String toString() {
+            return "Stats{hits=" + hits + ", misses=" + misses + ", loadFailures=" + loadFailures
+                    + ", totalLoadTime=" + totalLoadTime + ", evictions=" + evictions + "}";
+        }
+    }
+}
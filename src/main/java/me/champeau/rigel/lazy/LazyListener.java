@@ -0,0 +1,66 @@
+/*
+ * Copyright 2003-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.champeau.rigel.lazy;
+
+import me.champeau.rigel.lazy.internal.JfrLazyListener;
+
+/**
+ * Receives the events of instrumented lazy wrappers, created using
+ * {@link Lazy.Factory#instrumented(LazyListener)}. Durations are in nanoseconds.
+ * Listeners are called on the threads reading the lazy wrappers, so they must be
+ * thread safe and fast.
+ */
+public interface LazyListener {
+
+    /**
+     * Called when the supplier of a lazy wrapper returns.
+     *
+     * @param duration the time spent in the supplier
+     * @param waiters the number of other threads waiting for the value
+     */
+    default void initialized(long duration, int waiters) {
+    }
+
+    /**
+     * Called when the supplier of a lazy wrapper throws an exception.
+     *
+     * @param failure the exception thrown by the supplier
+     * @param duration the time spent in the supplier
+     * @param waiters the number of other threads waiting for the value
+     */
+    default void failed(Throwable failure, long duration, int waiters) {
+    }
+
+    /**
+     * Called when a thread which didn't call the supplier got the value of a lazy
+     * wrapper which wasn't initialized when the thread asked for it.
+     *
+     * @param duration the time the thread waited for the value
+     */
+    default void waited(long duration) {
+    }
+
+    /**
+     * Returns a listener which records Java Flight Recorder events. Events are only
+     * created when they are enabled in a recording. This listener requires the
+     * {@code jdk.jfr} module, which is an optional dependency of this library.
+     *
+     * @return a flight recorder listener
+     */
+    static LazyListener flightRecorder() {
+        return JfrLazyListener.INSTANCE;
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2003-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.champeau.rigel.lazy;
+
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * A lazy wrapper whose value expires and is then recomputed in the background.
+ * While the value is recomputed, readers keep getting the previous value, so
+ * refreshing never blocks them.
+ *
+ * @param <T> the type of the lazy value
+ * @see Lazy#refreshing(java.time.Duration, java.util.concurrent.Executor)
+ */
+public interface RefreshableLazy<T> extends Lazy<T> {
+
+    /**
+     * Marks the current value as stale: the next read triggers a refresh, but
+     * still returns the current value.
+     */
+    void invalidate();
+
+    /**
+     * Returns the exception thrown by the last refresh, if it failed. A failed refresh
+     * leaves the value stale, so it is refreshed again on the next read.
+     *
+     * @return the failure of the last refresh, or null if it succeeded
+     */
+    Throwable refreshFailure();
+
+    interface Factory extends Lazy.Factory {
+        @Override
+        <T> RefreshableLazy<T> of(Supplier<T> supplier);
+
+        @Override
+        default <T> RefreshableLazy<T> of(Supplier<T> supplier, Function<? super Throwable, ? extends T> fallback) {
+            return of(new FailureAwareSupplier<>(supplier, FailurePolicy.fallback(fallback)));
+        }
+
+        /**
+         * Returns a factory of refreshing lazy wrappers created by this factory, whose
+         * supplier follows a failure policy. Readers aren't affected by failures once
+         * a value was computed: they keep getting the stale value, while refreshes
+         * are skipped until the cached failure expires, the exception being reported
+         * by {@link #refreshFailure()}. Only the initial computation rethrows a
+         * cached failure, as a {@link CachedFailureException}.
+         *
+         * @param policy the failure policy
+         * @return a factory applying the failure policy
+         */
+        @Override
+        default Factory withFailurePolicy(FailurePolicy policy) {
+            Factory factory = this;
+            return new Factory() {
+                @Override
+                public <T> RefreshableLazy<T> of(Supplier<T> supplier) {
+                    return factory.of(new FailureAwareSupplier<>(supplier, policy));
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2003-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.champeau.rigel.lazy.internal;
+
+import me.champeau.rigel.lazy.Lazy;
+
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Base class of the lazy wrappers which call their supplier on the reading thread.
+ * Lazy wrappers derived using {@link #map(Function)}, {@link #flatMap(Function)}
+ * or {@link #zip(Lazy, BiFunction)} are created by the same factory, so they are
+ * as thread safe as their source.
+ *
+ * Mapping a lazy which isn't computed yet fuses the mapping functions: the derived
+ * lazy applies all of them directly to the root value, instead of walking a chain
+ * of lazy wrappers. As a consequence, if both a mapped lazy and a lazy derived from
+ * it are read, the common mapping functions may be applied twice, so they should
+ * be free of side effects.
+ */
+abstract class AbstractLazy<T> implements Lazy<T> {
+
+    /**
+     * @return the factory which creates lazy wrappers with the same thread safety
+     */
+    abstract Factory factory();
+
+    /**
+     * @return the supplier if the value isn't computed yet, null otherwise. It is
+     * read without synchronization, so it may be stale.
+     */
+    abstract Supplier<T> pendingSupplier();
+
+    @Override
+    public void use(Consumer<? super T> consumer) {
+        consumer.accept(get());
+    }
+
+    @Override
+    public <V> V apply(Function<? super T, V> function) {
+        return function.apply(get());
+    }
+
+    @Override
+    public <V> Lazy<V> map(Function<? super T, V> mapper) {
+        return factory().of(mapped(mapper));
+    }
+
+    @Override
+    public <V> Lazy<V> flatMap(Function<? super T, ? extends Lazy<V>> mapper) {
+        return factory().of(mapped(value -> mapper.apply(value).get()));
+    }
+
+    @Override
+    public <U, V> Lazy<V> zip(Lazy<U> other, BiFunction<? super T, ? super U, V> combiner) {
+        return factory().of(mapped(value -> combiner.apply(value, other.get())));
+    }
+
+    private <V> Supplier<V> mapped(Function<? super T, ? extends V> mapper) {
+        Supplier<T> pending = pendingSupplier();
+        if (pending instanceof MappedSupplier) {
+            return ((MappedSupplier<?, T>) pending).andThen(mapper);
+        }
+        return new MappedSupplier<>(this, mapper);
+    }
+
+    private static final class MappedSupplier<S, T> implements Supplier<T> {
+        private final Lazy<S> source;
+        private final Function<? super S, ? extends T> mapper;
+
+        private MappedSupplier(Lazy<S> source, Function<? super S, ? extends T> mapper) {
+            this.source = source;
+            this.mapper = mapper;
+        }
+
+        <V> MappedSupplier<S, V> andThen(Function<? super T, ? extends V> next) {
+            Function<? super S, ? extends T> mapper = this.mapper;
+            return new MappedSupplier<>(source, value -> next.apply(mapper.apply(value)));
+        }
+
+        @Override
+        public T get() {
+            return mapper.apply(source.get());
+        }
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2003-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.champeau.rigel.lazy.internal;
+
+import me.champeau.rigel.lazy.AsyncLazy;
+import me.champeau.rigel.lazy.Lazy;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+public class CompletableLazy<T> implements AsyncLazy<T> {
+    @SuppressWarnings("rawtypes")
+    private static final AtomicIntegerFieldUpdater<CompletableLazy> STARTED =
+            AtomicIntegerFieldUpdater.newUpdater(CompletableLazy.class, "started");
+
+    private final CompletableFuture<T> future = new CompletableFuture<>();
+    // a read-only view of the future, so that callers can't complete it
+    private final CompletionStage<T> stage = future.thenApply(Function.identity());
+    private Supplier<? extends CompletionStage<T>> computation;
+    private volatile int started;
+
+    private CompletableLazy(Supplier<? extends CompletionStage<T>> computation) {
+        this.computation = computation;
+    }
+
+    public static AsyncLazy.Factory factory(Executor executor) {
+        return new AsyncLazy.Factory() {
+            @Override
+            public <T> AsyncLazy<T> of(Supplier<T> supplier) {
+                return new CompletableLazy<>(() -> CompletableFuture.supplyAsync(supplier, executor));
+            }
+
+            @Override
+            public <T> AsyncLazy<T> eager(Supplier<T> supplier) {
+                CompletableLazy<T> lazy = new CompletableLazy<>(() -> CompletableFuture.supplyAsync(supplier, executor));
+                lazy.start();
+                return lazy;
+            }
+        };
+    }
+
+    private CompletableFuture<T> start() {
+        if (started == 0 && STARTED.compareAndSet(this, 0, 1)) {
+            Supplier<? extends CompletionStage<T>> computation = this.computation;
+            this.computation = null;
+            try {
+                computation.get().whenComplete((value, error) -> {
+                    if (error == null) {
+                        future.complete(value);
+                    } else {
+                        future.completeExceptionally(error instanceof CompletionException && error.getCause() != null ? error.getCause() : error);
+                    }
+                });
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        }
+        return future;
+    }
+
+    @Override
+    public T get() {
+        try {
+            return start().join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public CompletionStage<T> toCompletionStage() {
+        start();
+        return stage;
+    }
+
+    @Override
+    public boolean isDone() {
+        return future.isDone();
+    }
+
+    @Override
+    public void use(Consumer<? super T> consumer) {
+        consumer.accept(get());
+    }
+
+    @Override
+    public <V> V apply(Function<? super T, V> function) {
+        return function.apply(get());
+    }
+
+    @Override
+    public <V> AsyncLazy<V> map(Function<? super T, V> mapper) {
+        return new CompletableLazy<>(() -> start().thenApply(mapper));
+    }
+
+    @Override
+    public <V> AsyncLazy<V> flatMap(Function<? super T, ? extends Lazy<V>> mapper) {
+        return new CompletableLazy<>(() -> start().thenCompose(value -> stageOf(mapper.apply(value))));
+    }
+
+    @Override
+    public <U, V> AsyncLazy<V> zip(Lazy<U> other, BiFunction<? super T, ? super U, V> combiner) {
+        return new CompletableLazy<>(() -> start().thenCombine(stageOf(other), combiner));
+    }
+
+    /**
+     * Returns the stage of an asynchronous lazy wrapper without blocking, while
+     * other lazy wrappers are read when this method is called.
+     */
+    private static <V> CompletionStage<V> stageOf(Lazy<V> lazy) {
+        if (lazy instanceof AsyncLazy) {
+            return ((AsyncLazy<V>) lazy).toCompletionStage();
+        }
+        return CompletableFuture.completedFuture(lazy.get());
+    }
+}
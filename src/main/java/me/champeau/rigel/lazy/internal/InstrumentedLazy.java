@@ -0,0 +1,165 @@
+/*
+ * Copyright 2003-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.champeau.rigel.lazy.internal;
+
+import me.champeau.rigel.lazy.Lazy;
+import me.champeau.rigel.lazy.LazyListener;
+
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * A lazy wrapper which reports the initialization of another lazy wrapper to a
+ * listener. Once initialized, reading costs an extra volatile read.
+ *
+ * The listener isn't called while the other lazy wrapper holds its lock: the
+ * supplier only records what happened, and the reading thread reports it once
+ * the other lazy wrapper returns.
+ *
+ * Derived lazy wrappers read this one, so that an initialization triggered by one
+ * of them is reported too. They are created by the factory of the other lazy
+ * wrapper, and aren't instrumented themselves.
+ */
+public class InstrumentedLazy<T> implements Lazy<T> {
+    @SuppressWarnings("rawtypes")
+    private static final AtomicIntegerFieldUpdater<InstrumentedLazy> READERS =
+            AtomicIntegerFieldUpdater.newUpdater(InstrumentedLazy.class, "readers");
+    // the report of the instrumented lazy wrapper being read by the current thread
+    private static final ThreadLocal<Report> CURRENT = new ThreadLocal<>();
+
+    private final Factory factory;
+    private final LazyListener listener;
+    private final Lazy<T> delegate;
+    private volatile boolean initialized;
+    // number of threads reading before initialization, including the initializing thread
+    private volatile int readers;
+
+    private InstrumentedLazy(Factory factory, Supplier<T> supplier, LazyListener listener) {
+        this.factory = factory;
+        this.listener = listener;
+        this.delegate = factory.of(() -> compute(supplier));
+    }
+
+    public static Factory factory(Factory factory, LazyListener listener) {
+        return new Factory() {
+            @Override
+            public <T> Lazy<T> of(Supplier<T> supplier) {
+                return new InstrumentedLazy<>(factory, supplier, listener);
+            }
+        };
+    }
+
+    private T compute(Supplier<T> supplier) {
+        long start = System.nanoTime();
+        T value;
+        try {
+            value = supplier.get();
+        } catch (Throwable e) {
+            record(e, System.nanoTime() - start);
+            throw e;
+        }
+        record(null, System.nanoTime() - start);
+        initialized = true;
+        return value;
+    }
+
+    private void record(Throwable failure, long duration) {
+        // nested instrumented lazy wrappers restored the report of this one when they returned
+        Report report = CURRENT.get();
+        if (report != null) {
+            report.computed = true;
+            report.failure = failure;
+            report.duration = duration;
+            report.waiters = Math.max(0, readers - 1);
+        }
+    }
+
+    @Override
+    public T get() {
+        if (initialized) {
+            return delegate.get();
+        }
+        return waitForValue();
+    }
+
+    private T waitForValue() {
+        READERS.incrementAndGet(this);
+        Report report = new Report();
+        Report outer = CURRENT.get();
+        CURRENT.set(report);
+        long start = System.nanoTime();
+        boolean read = false;
+        try {
+            T value = delegate.get();
+            read = true;
+            return value;
+        } finally {
+            READERS.decrementAndGet(this);
+            if (outer == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(outer);
+            }
+            if (report.computed) {
+                if (report.failure == null) {
+                    listener.initialized(report.duration, report.waiters);
+                } else {
+                    listener.failed(report.failure, report.duration, report.waiters);
+                }
+            } else if (read) {
+                listener.waited(System.nanoTime() - start);
+            }
+        }
+    }
+
+    @Override
+    public void use(Consumer<? super T> consumer) {
+        consumer.accept(get());
+    }
+
+    @Override
+    public <V> V apply(Function<? super T, V> function) {
+        return function.apply(get());
+    }
+
+    @Override
+    public <V> Lazy<V> map(Function<? super T, V> mapper) {
+        return factory.of(() -> mapper.apply(get()));
+    }
+
+    @Override
+    public <V> Lazy<V> flatMap(Function<? super T, ? extends Lazy<V>> mapper) {
+        return factory.of(() -> mapper.apply(get()).get());
+    }
+
+    @Override
+    public <U, V> Lazy<V> zip(Lazy<U> other, BiFunction<? super T, ? super U, V> combiner) {
+        return factory.of(() -> combiner.apply(get(), other.get()));
+    }
+
+    /**
+     * What happened while a thread was reading the lazy wrapper before it was initialized
+     */
+    private static final class Report {
+        private boolean computed;
+        private Throwable failure;
+        private long duration;
+        private int waiters;
+    }
+}
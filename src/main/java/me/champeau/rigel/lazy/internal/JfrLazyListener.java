@@ -0,0 +1,93 @@
+/*
+ * Copyright 2003-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.champeau.rigel.lazy.internal;
+
+import me.champeau.rigel.lazy.LazyListener;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Records lazy initializations and waits as flight recorder events.
+ */
+public final class JfrLazyListener implements LazyListener {
+    public static final JfrLazyListener INSTANCE = new JfrLazyListener();
+
+    private JfrLazyListener() {
+    }
+
+    @Override
+    public void initialized(long duration, int waiters) {
+        InitializationEvent event = new InitializationEvent();
+        if (event.isEnabled()) {
+            event.supplierDuration = duration;
+            event.waiters = waiters;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void failed(Throwable failure, long duration, int waiters) {
+        InitializationEvent event = new InitializationEvent();
+        if (event.isEnabled()) {
+            event.supplierDuration = duration;
+            event.waiters = waiters;
+            event.failure = failure.toString();
+            event.commit();
+        }
+    }
+
+    @Override
+    public void waited(long duration) {
+        WaitEvent event = new WaitEvent();
+        if (event.isEnabled()) {
+            event.waitDuration = duration;
+            event.commit();
+        }
+    }
+
+    @Name("me.champeau.rigel.LazyInitialization")
+    @Label("Lazy Initialization")
+    @Category("Rigel")
+    @Description("A lazy value was computed")
+    static final class InitializationEvent extends Event {
+        @Label("Supplier Duration")
+        @Timespan
+        long supplierDuration;
+
+        @Label("Waiters")
+        @Description("Number of other threads waiting for the value")
+        int waiters;
+
+        @Label("Failure")
+        @Description("The exception thrown by the supplier, if any")
+        String failure;
+    }
+
+    @Name("me.champeau.rigel.LazyWait")
+    @Label("Lazy Wait")
+    @Category("Rigel")
+    @Description("A thread waited for a lazy value computed by another thread")
+    static final class WaitEvent extends Event {
+        @Label("Wait Duration")
+        @Timespan
+        long waitDuration;
+    }
+}
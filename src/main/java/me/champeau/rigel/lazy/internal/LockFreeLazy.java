@@ -0,0 +1,141 @@
+/*
+ * Copyright 2003-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.champeau.rigel.lazy.internal;
+
+import me.champeau.rigel.lazy.Lazy;
+
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * A thread safe lazy wrapper which doesn't use locks. Once initialized, reading the
+ * value is a single volatile read. Initialization is claimed by compare-and-set on
+ * a state field, which holds a stack of the threads waiting for the value: those
+ * threads are parked until the value is published, instead of spinning.
+ *
+ * If the supplier throws an exception, the exception is propagated to the calling
+ * thread and the waiting threads are released, one of them trying again.
+ */
+public class LockFreeLazy<T> extends AbstractLazy<T> {
+    private static final Object UNSET = new Object();
+    private static final Waiter DONE = new Waiter(null, null);
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<LockFreeLazy, Waiter> STATE =
+            AtomicReferenceFieldUpdater.newUpdater(LockFreeLazy.class, Waiter.class, "state");
+
+    private volatile Object value = UNSET;
+    // null when idle, DONE when initialized, or the waiting threads stacked over the initializing thread
+    private volatile Waiter state;
+    private Supplier<T> supplier;
+    private Thread initializer;
+
+    public LockFreeLazy(Supplier<T> supplier) {
+        this.supplier = supplier;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T get() {
+        Object value = this.value;
+        if (value != UNSET) {
+            return (T) value;
+        }
+        return initialize();
+    }
+
+    @SuppressWarnings("unchecked")
+    private T initialize() {
+        Thread current = Thread.currentThread();
+        boolean interrupted = false;
+        try {
+            while (true) {
+                Object value = this.value;
+                if (value != UNSET) {
+                    return (T) value;
+                }
+                Waiter state = this.state;
+                if (state == null) {
+                    if (STATE.compareAndSet(this, null, new Waiter(current, null))) {
+                        return compute(current);
+                    }
+                } else if (state != DONE) {
+                    if (initializer == current) {
+                        throw new IllegalStateException("Recursive initialization of a lazy value");
+                    }
+                    Waiter waiter = new Waiter(current, state);
+                    if (STATE.compareAndSet(this, state, waiter)) {
+                        while (!waiter.released) {
+                            LockSupport.park(this);
+                            interrupted |= Thread.interrupted();
+                        }
+                    }
+                }
+            }
+        } finally {
+            if (interrupted) {
+                current.interrupt();
+            }
+        }
+    }
+
+    private T compute(Thread current) {
+        initializer = current;
+        T result;
+        try {
+            result = supplier.get();
+        } catch (Throwable e) {
+            initializer = null;
+            release(null, current);
+            throw e;
+        }
+        initializer = null;
+        supplier = null;
+        value = result;
+        release(DONE, current);
+        return result;
+    }
+
+    private void release(Waiter next, Thread current) {
+        for (Waiter waiter = STATE.getAndSet(this, next); waiter != null; waiter = waiter.next) {
+            if (waiter.thread != current) {
+                waiter.released = true;
+                LockSupport.unpark(waiter.thread);
+            }
+        }
+    }
+
+    @Override
+    Factory factory() {
+        return Lazy.lockFree();
+    }
+
+    @Override
+    Supplier<T> pendingSupplier() {
+        return supplier;
+    }
+
+    private static final class Waiter {
+        private final Thread thread;
+        private final Waiter next;
+        private volatile boolean released;
+
+        private Waiter(Thread thread, Waiter next) {
+            this.thread = thread;
+            this.next = next;
+        }
+    }
+}
@@ -19,11 +19,9 @@
 
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
-import java.util.function.Consumer;
-import java.util.function.Function;
 import java.util.function.Supplier;
 
-public class LockingLazy<T> implements Lazy<T> {
+public class LockingLazy<T> extends AbstractLazy<T> {
     private final Lock lock = new ReentrantLock();
     private Supplier<T> supplier;
     private T value;
@@ -57,12 +55,12 @@ private void maybeInitialize() {
     }
 
     @Override
-    public void use(Consumer<? super T> consumer) {
-
+    Factory factory() {
+        return Lazy.locking();
     }
 
     @Override
-    public <V> V apply(Function<? super T, V> function) {
-        return function.apply(ensureValue());
+    Supplier<T> pendingSupplier() {
+        return supplier;
     }
 }
@@ -0,0 +1,252 @@
+/*
+ * Copyright 2003-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.champeau.rigel.lazy.internal;
+
+import me.champeau.rigel.lazy.Lazy;
+import me.champeau.rigel.lazy.RefreshableLazy;
+
+import java.time.Duration;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * A lazy wrapper with stale-while-revalidate semantics. The value and its expiry
+ * are published together as an immutable entry, so reading is lock-free. The first
+ * reader which sees an expired or invalidated entry claims the refresh and submits
+ * it to the executor, and every reader gets the stale value until the new entry is
+ * published. Only the initial computation blocks readers.
+ *
+ * If a refresh fails, the entry stays stale, so that the next read triggers another
+ * refresh, and the exception is recorded, see {@link #refreshFailure()}.
+ *
+ * Lazy wrappers derived from a refreshing lazy follow its refreshes: their function
+ * is applied again whenever one of the values it was applied to changes.
+ */
+public class RefreshingLazy<T> implements RefreshableLazy<T> {
+    @SuppressWarnings("rawtypes")
+    private static final AtomicIntegerFieldUpdater<RefreshingLazy> REFRESHING =
+            AtomicIntegerFieldUpdater.newUpdater(RefreshingLazy.class, "refreshing");
+    @SuppressWarnings("rawtypes")
+    private static final AtomicIntegerFieldUpdater<RefreshingLazy> GENERATION =
+            AtomicIntegerFieldUpdater.newUpdater(RefreshingLazy.class, "generation");
+
+    private final Object lock = new Object();
+    private final Supplier<T> supplier;
+    private final long timeToLive;
+    private final Executor executor;
+    private volatile Entry<T> entry;
+    private volatile int refreshing;
+    // incremented on each invalidation, so that values computed before are stale
+    private volatile int generation;
+    private volatile Throwable refreshFailure;
+
+    private RefreshingLazy(Supplier<T> supplier, long timeToLive, Executor executor) {
+        this.supplier = supplier;
+        this.timeToLive = timeToLive;
+        this.executor = executor;
+    }
+
+    public static RefreshableLazy.Factory factory(Duration timeToLive, Executor executor) {
+        if (timeToLive.isNegative() || timeToLive.isZero()) {
+            throw new IllegalArgumentException("Time to live must be positive");
+        }
+        long nanos = timeToLive.toNanos();
+        return new RefreshableLazy.Factory() {
+            @Override
+            public <T> RefreshableLazy<T> of(Supplier<T> supplier) {
+                return new RefreshingLazy<>(supplier, nanos, executor);
+            }
+        };
+    }
+
+    @Override
+    public T get() {
+        Entry<T> entry = this.entry;
+        if (entry == null) {
+            return load();
+        }
+        if (System.nanoTime() - entry.expiresAt >= 0 || entry.generation != generation) {
+            refresh();
+        }
+        return entry.value;
+    }
+
+    private T load() {
+        synchronized (lock) {
+            Entry<T> entry = this.entry;
+            if (entry == null) {
+                int generation = this.generation;
+                entry = new Entry<>(supplier.get(), System.nanoTime() + timeToLive, generation);
+                this.entry = entry;
+            }
+            return entry.value;
+        }
+    }
+
+    private void refresh() {
+        if (refreshing == 0 && REFRESHING.compareAndSet(this, 0, 1)) {
+            try {
+                executor.execute(this::doRefresh);
+            } catch (RejectedExecutionException e) {
+                // the value will be refreshed by a later read
+                refreshing = 0;
+            }
+        }
+    }
+
+    private void doRefresh() {
+        int generation = this.generation;
+        try {
+            entry = new Entry<>(supplier.get(), System.nanoTime() + timeToLive, generation);
+            refreshFailure = null;
+        } catch (Throwable e) {
+            // nobody observes exceptions thrown on the executor, and the entry stays stale
+            refreshFailure = e;
+        } finally {
+            refreshing = 0;
+        }
+    }
+
+    @Override
+    public Throwable refreshFailure() {
+        return refreshFailure;
+    }
+
+    @Override
+    public void invalidate() {
+        GENERATION.incrementAndGet(this);
+    }
+
+    @Override
+    public void use(Consumer<? super T> consumer) {
+        consumer.accept(get());
+    }
+
+    @Override
+    public <V> V apply(Function<? super T, V> function) {
+        return function.apply(get());
+    }
+
+    @Override
+    public <V> Lazy<V> map(Function<? super T, V> mapper) {
+        return new Derived<>(this::get, null, (value, ignored) -> mapper.apply(value));
+    }
+
+    @Override
+    public <V> Lazy<V> flatMap(Function<? super T, ? extends Lazy<V>> mapper) {
+        return flatten(map(mapper));
+    }
+
+    @Override
+    public <U, V> Lazy<V> zip(Lazy<U> other, BiFunction<? super T, ? super U, V> combiner) {
+        return new Derived<>(this::get, other::get, combiner);
+    }
+
+    /**
+     * The lazy wrapper returned by the mapper is read on each access, since it may
+     * change even if the value it was derived from doesn't.
+     */
+    private static <V> Lazy<V> flatten(Lazy<? extends Lazy<V>> lazies) {
+        return new Derived<>(() -> lazies.get().get(), null, (value, ignored) -> value);
+    }
+
+    private static final class Entry<T> {
+        private final T value;
+        private final long expiresAt;
+        private final int generation;
+
+        private Entry(T value, long expiresAt, int generation) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+            this.generation = generation;
+        }
+    }
+
+    /**
+     * A lazy wrapper derived from one or two values. The last result is cached with
+     * the values it was computed from, so the function is applied again only when
+     * one of them changes.
+     */
+    private static final class Derived<A, B, V> implements Lazy<V> {
+        private final Supplier<A> first;
+        private final Supplier<B> second;
+        private final BiFunction<? super A, ? super B, V> function;
+        private volatile Result<A, B, V> result;
+
+        private Derived(Supplier<A> first, Supplier<B> second, BiFunction<? super A, ? super B, V> function) {
+            this.first = first;
+            this.second = second;
+            this.function = function;
+        }
+
+        @Override
+        public V get() {
+            A a = first.get();
+            B b = second == null ? null : second.get();
+            Result<A, B, V> result = this.result;
+            if (result != null && result.first == a && result.second == b) {
+                return result.value;
+            }
+            // the function may run concurrently for the same values, the last result wins
+            V value = function.apply(a, b);
+            this.result = new Result<>(a, b, value);
+            return value;
+        }
+
+        @Override
+        public void use(Consumer<? super V> consumer) {
+            consumer.accept(get());
+        }
+
+        @Override
+        public <R> R apply(Function<? super V, R> function) {
+            return function.apply(get());
+        }
+
+        @Override
+        public <R> Lazy<R> map(Function<? super V, R> mapper) {
+            BiFunction<? super A, ? super B, V> function = this.function;
+            return new Derived<>(first, second, (a, b) -> mapper.apply(function.apply(a, b)));
+        }
+
+        @Override
+        public <R> Lazy<R> flatMap(Function<? super V, ? extends Lazy<R>> mapper) {
+            return flatten(map(mapper));
+        }
+
+        @Override
+        public <U, R> Lazy<R> zip(Lazy<U> other, BiFunction<? super V, ? super U, R> combiner) {
+            return new Derived<>(this::get, other::get, combiner);
+        }
+    }
+
+    private static final class Result<A, B, V> {
+        private final A first;
+        private final B second;
+        private final V value;
+
+        private Result(A first, B second, V value) {
+            this.first = first;
+            this.second = second;
+            this.value = value;
+        }
+    }
+}
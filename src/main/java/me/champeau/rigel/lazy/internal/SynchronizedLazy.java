@@ -17,11 +17,9 @@
 
 import me.champeau.rigel.lazy.Lazy;
 
-import java.util.function.Consumer;
-import java.util.function.Function;
 import java.util.function.Supplier;
 
-public class SynchronizedLazy<T> implements Lazy<T> {
+public class SynchronizedLazy<T> extends AbstractLazy<T> {
     private final Object lock = new Object();
     private Supplier<T> supplier;
     private volatile T value;
@@ -52,12 +50,12 @@ private void maybeInitialize() {
     }
 
     @Override
-    public void use(Consumer<? super T> consumer) {
-
+    Factory factory() {
+        return Lazy.synchronizing();
     }
 
     @Override
-    public <V> V apply(Function<? super T, V> function) {
-        return function.apply(ensureValue());
+    Supplier<T> pendingSupplier() {
+        return supplier;
     }
 }
@@ -17,11 +17,9 @@
 
 import me.champeau.rigel.lazy.Lazy;
 
-import java.util.function.Consumer;
-import java.util.function.Function;
 import java.util.function.Supplier;
 
-public class UnsafeLazy<T> implements Lazy<T> {
+public class UnsafeLazy<T> extends AbstractLazy<T> {
     private Supplier<T> supplier;
     private T value;
 
@@ -43,13 +41,12 @@ private T ensureValue() {
     }
 
     @Override
-    public void use(Consumer<? super T> consumer) {
-        consumer.accept(ensureValue());
+    Factory factory() {
+        return Lazy.unsafe();
     }
 
     @Override
-    public <V> V apply(Function<? super T, V> function) {
-        return function.apply(ensureValue());
+    Supplier<T> pendingSupplier() {
+        return supplier;
     }
-
 }
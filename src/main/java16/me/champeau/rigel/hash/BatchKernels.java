@@ -0,0 +1,90 @@
+/*
+ * Copyright 2003-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.champeau.rigel.hash;
+
+import java.util.Optional;
+
+/**
+ * The loops of batch lookups and builds which don't depend on the hasher: first level
+ * hashing of primitive keys and seed loading. This is the Java 16+ version, which uses
+ * the Vector API when the {@code jdk.incubator.vector} module is resolved, for example
+ * with {@code --add-modules jdk.incubator.vector}, and falls back to scalar loops
+ * otherwise. Vectorization can be disabled with {@code -Dme.champeau.rigel.vector=false}.
+ */
+final class BatchKernels {
+    // below this number of keys, the setup of vectors costs more than it saves
+    private static final int MIN_VECTOR_LENGTH = 16;
+    private static final boolean VECTORIZED = vectorModuleAvailable();
+
+    private BatchKernels() {
+    }
+
+    private static boolean vectorModuleAvailable() {
+        if (!Boolean.parseBoolean(System.getProperty("me.champeau.rigel.vector", "true"))) {
+            return false;
+        }
+        Optional<Module> vector = ModuleLayer.boot().findModule("jdk.incubator.vector");
+        if (vector.isEmpty()) {
+            return false;
+        }
+        // the module descriptor can't require an incubator module, so read it explicitly
+        BatchKernels.class.getModule().addReads(vector.get());
+        return true;
+    }
+
+    /**
+     * Computes the first level bucket of a range of long keys.
+     *
+     * @see LongMPHBuilder#firstLevelHash(long, int, int)
+     */
+    static void firstLevelHashes(long[] keys, int from, int to, int firstLevelSize, int firstLevelSeed, int[] out) {
+        if (VECTORIZED && to - from >= MIN_VECTOR_LENGTH) {
+            VectorKernels.firstLevelHashes(keys, from, to, firstLevelSize, firstLevelSeed, out);
+            return;
+        }
+        for (int i = from; i < to; i++) {
+            out[i] = LongMPHBuilder.firstLevelHash(keys[i], firstLevelSize, firstLevelSeed);
+        }
+    }
+
+    /**
+     * Computes the first level bucket of a range of int keys.
+     *
+     * @see IntMPHBuilder#firstLevelHash(int, int, int)
+     */
+    static void firstLevelHashes(int[] keys, int from, int to, int firstLevelSize, int firstLevelSeed, int[] out) {
+        if (VECTORIZED && to - from >= MIN_VECTOR_LENGTH) {
+            VectorKernels.firstLevelHashes(keys, from, to, firstLevelSize, firstLevelSeed, out);
+            return;
+        }
+        for (int i = from; i < to; i++) {
+            out[i] = IntMPHBuilder.firstLevelHash(keys[i], firstLevelSize, firstLevelSeed);
+        }
+    }
+
+    /**
+     * Replaces a range of indices with the values of a table at those indices.
+     */
+    static void gather(int[] table, int[] indices, int from, int to) {
+        if (VECTORIZED && to - from >= MIN_VECTOR_LENGTH) {
+            VectorKernels.gather(table, indices, from, to);
+            return;
+        }
+        for (int i = from; i < to; i++) {
+            indices[i] = table[indices[i]];
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2003-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package me.champeau.rigel.hash;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorSpecies;
+
+import static jdk.incubator.vector.VectorOperators.I2L;
+import static jdk.incubator.vector.VectorOperators.L2I;
+import static jdk.incubator.vector.VectorOperators.LSHR;
+import static jdk.incubator.vector.VectorOperators.XOR;
+
+/**
+ * Vector API implementations of {@link BatchKernels}. This class must only be loaded
+ * when the {@code jdk.incubator.vector} module is available.
+ *
+ * First level hashes mix keys in 64-bit lanes, int keys being sign extended, and the
+ * final reduction takes the high half of a 32x32-bit product, which fits in those
+ * lanes. Int vectors have the shape of the preferred long vectors, whatever its size,
+ * so each int vector is processed as two long vectors, its low and high halves.
+ */
+final class VectorKernels {
+    private static final VectorSpecies<Long> LONGS = LongVector.SPECIES_PREFERRED;
+    // twice as many lanes as LONGS
+    private static final VectorSpecies<Integer> INTS = LONGS.withLanes(int.class);
+
+    private VectorKernels() {
+    }
+
+    static void firstLevelHashes(long[] keys, int from, int to, int firstLevelSize, int firstLevelSeed, int[] out) {
+        long salt = Hashers.salt(firstLevelSeed);
+        int i = from;
+        for (int bound = from + INTS.loopBound(to - from); i < bound; i += INTS.length()) {
+            LongVector low = LongVector.fromArray(LONGS, keys, i);
+            LongVector high = LongVector.fromArray(LONGS, keys, i + LONGS.length());
+            narrow(reduce(mix(low, salt), firstLevelSize), reduce(mix(high, salt), firstLevelSize)).intoArray(out, i);
+        }
+        for (; i < to; i++) {
+            out[i] = LongMPHBuilder.firstLevelHash(keys[i], firstLevelSize, firstLevelSeed);
+        }
+    }
+
+    static void firstLevelHashes(int[] keys, int from, int to, int firstLevelSize, int firstLevelSeed, int[] out) {
+        long salt = Hashers.salt(firstLevelSeed);
+        int i = from;
+        for (int bound = from + INTS.loopBound(to - from); i < bound; i += INTS.length()) {
+            IntVector key = IntVector.fromArray(INTS, keys, i);
+            LongVector low = (LongVector) key.convertShape(I2L, LONGS, 0);
+            LongVector high = (LongVector) key.convertShape(I2L, LONGS, 1);
+            narrow(reduce(mix(low, salt), firstLevelSize), reduce(mix(high, salt), firstLevelSize)).intoArray(out, i);
+        }
+        for (; i < to; i++) {
+            out[i] = IntMPHBuilder.firstLevelHash(keys[i], firstLevelSize, firstLevelSeed);
+        }
+    }
+
+    static void gather(int[] table, int[] indices, int from, int to) {
+        int i = from;
+        for (int bound = from + INTS.loopBound(to - from); i < bound; i += INTS.length()) {
+            IntVector.fromArray(INTS, table, 0, indices, i).intoArray(indices, i);
+        }
+        for (; i < to; i++) {
+            indices[i] = table[indices[i]];
+        }
+    }
+
+    /**
+     * {@link Hashers#mix(long, int)}, leaving the result in the low half of the lanes
+     */
+    private static LongVector mix(LongVector key, long salt) {
+        LongVector h = key.lanewise(XOR, salt);
+        h = h.lanewise(XOR, h.lanewise(LSHR, 30)).mul(0xBF58476D1CE4E5B9L);
+        h = h.lanewise(XOR, h.lanewise(LSHR, 27)).mul(0x94D049BB133111EBL);
+        return h.lanewise(XOR, h.lanewise(LSHR, 31)).lanewise(LSHR, 32);
+    }
+
+    /**
+     * Narrows two vectors of values which fit in an int into the low and high halves of an int vector
+     */
+    private static IntVector narrow(LongVector low, LongVector high) {
+        IntVector lowInts = (IntVector) low.convertShape(L2I, INTS, 0);
+        return lowInts.or((IntVector) high.convertShape(L2I, INTS, -1));
+    }
+
+    /**
+     * {@link Hashers#reduce(int, int)} on unsigned 32-bit lanes
+     */
+    private static LongVector reduce(LongVector hash, int n) {
+        return hash.mul(n).lanewise(LSHR, 32);
+    }
+}
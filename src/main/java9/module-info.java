@@ -1,4 +1,6 @@
 module me.champeau.rigel {
+    requires static jdk.jfr;
+
     exports me.champeau.rigel.lazy;
     exports me.champeau.rigel.hash;
 }
\ No newline at end of file
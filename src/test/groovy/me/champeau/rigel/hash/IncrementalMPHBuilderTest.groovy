@@ -0,0 +1,70 @@
+package me.champeau.rigel.hash
+
+import spock.lang.Specification
+
+import java.util.concurrent.Executors
+
+class IncrementalMPHBuilderTest extends Specification {
+
+    void "only rebuilds segments which received new keys"() {
+        def builder = new IncrementalMPHBuilder<String>(100, Hashers.charSequences())
+        def words = (0..<20_000).collect { "Hello $it".toString() }
+        def more = (20_000..<20_010).collect { "Hello $it".toString() }
+
+        when:
+        words.each { builder.add(it) }
+        def first = builder.build()
+
+        then:
+        first.size() == 20_000
+        words.collect { first.applyAsInt(it) } as Set == (0..<20_000) as Set
+        builder.stats().keys() == 20_000
+        builder.dirtySegments() == 0
+
+        when: "adding a few keys and a duplicate"
+        more.each { builder.add(it) }
+        builder.add(words[0])
+        def dirty = builder.dirtySegments()
+        def second = builder.build()
+
+        then:
+        dirty <= 10
+        builder.stats().keys() < 20_000 * dirty / 50
+        second.size() == 20_010
+        (words + more).collect { second.applyAsInt(it) } as Set == (0..<20_010) as Set
+
+        and: "previously built hash functions are unchanged"
+        words.collect { first.applyAsInt(it) } as Set == (0..<20_000) as Set
+    }
+
+    void "can rebuild segments in parallel and write the result"() {
+        def builder = new IncrementalMPHBuilder<String>(8, Hashers.charSequences())
+                .withCompression(MPHBuilder.Compression.COMPACT)
+        def words = (0..<2000).collect { "Hello $it".toString() }
+        def executor = Executors.newFixedThreadPool(4)
+        def file = File.createTempFile("mph", ".bin")
+        file.deleteOnExit()
+
+        when:
+        words.each { builder.add(it) }
+        def hashFunc = builder.build(executor)
+        MPHFile.write(hashFunc, file.toPath())
+        def mapped = MPHFile.map(file.toPath(), Hashers.charSequences())
+
+        then:
+        words.collect { hashFunc.applyAsInt(it) } as Set == (0..<2000) as Set
+        words.every { mapped.applyAsInt(it) == hashFunc.applyAsInt(it) }
+
+        cleanup:
+        executor.shutdown()
+    }
+
+    void "reasonable error message for invalid number of segments"() {
+        when:
+        new IncrementalMPHBuilder<String>(0, Hashers.charSequences())
+
+        then:
+        def e = thrown(IllegalArgumentException)
+        e.message == "Number of segments must be positive"
+    }
+}
@@ -0,0 +1,149 @@
+package me.champeau.rigel.hash
+
+import spock.lang.Specification
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicInteger
+
+class IndexHolderTest extends Specification {
+
+    void "publishes new versions built in the background"() {
+        def holder = IndexHolder.of(map(0))
+        def executor = Executors.newSingleThreadExecutor()
+
+        expect:
+        holder.current().get("key 42") == "value 42 v0"
+
+        when:
+        def next = holder.rebuild({ map(1) }, executor).join()
+
+        then:
+        holder.current().is(next)
+        holder.current().get("key 42") == "value 42 v1"
+
+        cleanup:
+        executor.shutdown()
+    }
+
+    void "keeps the current version when a rebuild fails"() {
+        def holder = IndexHolder.of(map(0))
+        def executor = Executors.newSingleThreadExecutor()
+
+        when:
+        holder.rebuild({ throw new IllegalStateException("boom") }, executor).join()
+
+        then:
+        thrown(Exception)
+        holder.current().get("key 42") == "value 42 v0"
+
+        cleanup:
+        executor.shutdown()
+    }
+
+    void "releases replaced versions once their last lease is closed"() {
+        def released = []
+        def holder = IndexHolder.of("v0", { released << it })
+
+        when:
+        def lease = holder.acquire()
+        holder.publish("v1", { released << it })
+
+        then:
+        lease.get() == "v0"
+        holder.current() == "v1"
+        released == []
+
+        when:
+        lease.close()
+        lease.close()
+
+        then:
+        released == ["v0"]
+
+        when:
+        lease.get()
+
+        then:
+        def e = thrown(IllegalStateException)
+        e.message == "Lease is closed"
+
+        when:
+        holder.close()
+        holder.acquire()
+
+        then:
+        released == ["v0", "v1"]
+        e = thrown(IllegalStateException)
+        e.message == "Index holder is closed"
+    }
+
+    void "can't read the current version of a closed holder"() {
+        def holder = IndexHolder.of("v0")
+
+        when:
+        holder.close()
+        holder.current()
+
+        then:
+        def e = thrown(IllegalStateException)
+        e.message == "Index holder is closed"
+    }
+
+    void "readers never see a released version or a torn view"() {
+        def releases = new AtomicInteger()
+        def holder = IndexHolder.of(new Versioned(0), { it.released = true; releases.incrementAndGet() })
+        def stop = new AtomicBoolean()
+        def errors = new AtomicInteger()
+        def started = new CountDownLatch(4)
+        def executor = Executors.newFixedThreadPool(4)
+
+        when:
+        4.times {
+            executor.submit {
+                started.countDown()
+                while (!stop.get()) {
+                    def lease = holder.acquire()
+                    try {
+                        def version = lease.get()
+                        if (version.released || version.values.any { it != version.id }) {
+                            errors.incrementAndGet()
+                        }
+                    } finally {
+                        lease.close()
+                    }
+                }
+            }
+        }
+        started.await()
+        (1..1000).each { id ->
+            holder.publish(new Versioned(id), { it.released = true; releases.incrementAndGet() })
+        }
+        stop.set(true)
+        executor.shutdown()
+        executor.awaitTermination(10, TimeUnit.SECONDS)
+
+        then:
+        errors.get() == 0
+        releases.get() == 1000
+    }
+
+    private static MphMap<String, String> map(int version) {
+        def builder = MphMap.<String, String> builder(Hashers.charSequences())
+        100.times { builder.put("key $it".toString(), "value $it v$version".toString()) }
+        builder.build()
+    }
+
+    static class Versioned {
+        final int id
+        final int[] values
+        volatile boolean released
+
+        Versioned(int id) {
+            this.id = id
+            this.values = [id] * 16 as int[]
+        }
+    }
+}
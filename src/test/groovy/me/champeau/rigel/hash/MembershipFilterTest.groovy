@@ -0,0 +1,94 @@
+package me.champeau.rigel.hash
+
+import spock.lang.Shared
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class MembershipFilterTest extends Specification {
+    @Shared
+    List<String> words = (0..<10_000).collect { "word $it".toString() }
+
+    @Shared
+    MPHBuilder<String> builder = new MPHBuilder<String>(Hashers.charSequences())
+
+    @Shared
+    MinimalPerfectHasher<String> hashFunc
+
+    void setupSpec() {
+        words.each { builder.add(it) }
+        hashFunc = builder.build()
+    }
+
+    @Unroll
+    void "filter with a false positive rate of #rate uses #bits bits fingerprints"() {
+        when:
+        def filter = builder.buildFilter(hashFunc, rate)
+        def falsePositives = (0..<100_000).count { filter.mightContain("other $it".toString()) }
+
+        then:
+        filter.fingerprintBits() == bits
+        filter.falsePositiveRate() <= rate
+        words.every { filter.mightContain(it) && filter.slot(it) == hashFunc.applyAsInt(it) }
+        falsePositives < 100_000 * 2 * filter.falsePositiveRate()
+        filter.bitsPerKey() < bits + 1
+
+        where:
+        rate   | bits
+        0.5    | 1
+        0.0625 | 4
+        0.01   | 7
+        0.001  | 10
+    }
+
+    void "rejects unknown keys in batches"() {
+        def filter = builder.buildFilter(hashFunc, 1e-6)
+        def keys = ["word 1", "word 2", "unknown 1", "word 3", "unknown 2"] as String[]
+        def out = new int[keys.length]
+
+        when:
+        filter.slots(keys, out)
+
+        then:
+        out as List == keys.collect { filter.slot(it) }
+        out[2] == -1
+        out[4] == -1
+        out[0] >= 0
+    }
+
+    void "empty filters reject all keys"() {
+        def empty = new MPHBuilder<String>(Hashers.charSequences())
+        def filter = empty.buildFilter(empty.build(), 0.01)
+        def keys = ["word 1", "unknown"] as String[]
+        def out = new int[keys.length]
+
+        when:
+        filter.slots(keys, out)
+
+        then:
+        !filter.mightContain("word 1")
+        filter.slot("unknown") == -1
+        out as List == [-1, -1]
+        filter.bitsPerKey() == 0
+    }
+
+    void "reasonable error message for invalid false positive rate"() {
+        when:
+        builder.buildFilter(hashFunc, 1)
+
+        then:
+        def e = thrown(IllegalArgumentException)
+        e.message == "False positive rate must be between 0 and 1, exclusive"
+    }
+
+    void "reasonable error message when the hash function doesn't match the builder"() {
+        def other = new MPHBuilder<String>(Hashers.charSequences())
+        other.add("hello")
+
+        when:
+        builder.buildFilter(other.build(), 0.01)
+
+        then:
+        def e = thrown(IllegalArgumentException)
+        e.message == "Hash function wasn't built from the current keys of this builder"
+    }
+}
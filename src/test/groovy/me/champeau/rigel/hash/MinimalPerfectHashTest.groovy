@@ -7,6 +7,10 @@ import spock.lang.Shared
 import spock.lang.Specification
 import spock.lang.Unroll
 
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import java.util.concurrent.Executors
+
 import static java.util.Optional.empty
 import static java.util.Optional.of
 
@@ -29,7 +33,7 @@ class MinimalPerfectHashTest extends Specification {
     }
 
     void "can build a minimal perfect hasher for strings"() {
-        def mphbuilder = new MPHBuilder(3, this.&stringHasher)
+        def mphbuilder = new MPHBuilder(3, Hashers.charSequences())
         def words = [
                 'hello',
                 'world',
@@ -97,8 +101,143 @@ class MinimalPerfectHashTest extends Specification {
 
     }
 
+    void "duplicate keys are ignored"() {
+        def mphbuilder = new MPHBuilder(50, Hashers.charSequences())
+        def words = (0..<100).collect { "Hello $it".toString() }
+
+        when:
+        3.times {
+            words.each { mphbuilder.add(new String(it)) }
+        }
+        def hashFunc = mphbuilder.build()
+
+        then:
+        hashFunc.size() == 100
+        words.collect { hashFunc.applyAsInt(it) } as Set == (0..<100) as Set
+    }
+
+    @Unroll
+    void "can build a minimal perfect hasher with #compression seeds"() {
+        def mphbuilder = new MPHBuilder(1000, Hashers.charSequences()).withCompression(compression)
+        def words = (0..<2000).collect { "Hello $it".toString() }
+
+        when:
+        words.each { mphbuilder.add(it) }
+        def hashFunc = mphbuilder.build()
+
+        then:
+        hashFunc.size() == 2000
+        words.collect { hashFunc.applyAsInt(it) } as Set == (0..<2000) as Set
+        hashFunc.bitsPerKey() <= maxBitsPerKey
+
+        where:
+        compression                    | maxBitsPerKey
+        MPHBuilder.Compression.NONE    | 16
+        MPHBuilder.Compression.COMPACT | 8
+    }
+
+    void "can build a partitioned minimal perfect hasher in parallel"() {
+        def mphbuilder = new MPHBuilder(1000, Hashers.charSequences())
+        def words = (0..<2000).collect { "Hello $it".toString() }
+        def executor = Executors.newFixedThreadPool(4)
+
+        when:
+        words.each { mphbuilder.add(it) }
+        def hashFunc = mphbuilder.build(4, executor)
+
+        then:
+        hashFunc.size() == 2000
+        words.collect { hashFunc.applyAsInt(it) } as Set == (0..<2000) as Set
+
+        cleanup:
+        executor.shutdown()
+    }
+
+    @Unroll
+    void "can write and map a minimal perfect hasher (#compression seeds, #partitions partitions)"() {
+        def mphbuilder = new MPHBuilder(1000, Hashers.charSequences()).withCompression(compression)
+        def words = (0..<2000).collect { "Hello $it".toString() }
+        def file = File.createTempFile("mph", ".bin")
+        file.deleteOnExit()
+
+        when:
+        words.each { mphbuilder.add(it) }
+        def hashFunc = partitions == 1 ? mphbuilder.build() : mphbuilder.build(partitions)
+        MPHFile.write(hashFunc, file.toPath())
+        def mapped = MPHFile.map(file.toPath(), Hashers.charSequences())
+
+        then:
+        mapped.size() == 2000
+        mapped.bitsPerKey() == hashFunc.bitsPerKey()
+        words.every { mapped.applyAsInt(it) == hashFunc.applyAsInt(it) }
+
+        where:
+        compression                    | partitions
+        MPHBuilder.Compression.NONE    | 1
+        MPHBuilder.Compression.COMPACT | 1
+        MPHBuilder.Compression.NONE    | 4
+        MPHBuilder.Compression.COMPACT | 4
+    }
+
+    void "reasonable error message when mapping an invalid file"() {
+        def file = File.createTempFile("mph", ".bin")
+        file.deleteOnExit()
+        file.text = "not a hash function"
+
+        when:
+        MPHFile.map(file.toPath(), Hashers.charSequences())
+
+        then:
+        def e = thrown(IOException)
+        e.message == "File ${file.toPath()} is not a minimal perfect hash file"
+    }
+
+    void "can build minimal perfect hashers for primitive keys"() {
+        def longBuilder = new LongMPHBuilder(500, Hashers.longs())
+        def intBuilder = new IntMPHBuilder(500, Hashers.ints())
+        def bytesBuilder = new BytesMPHBuilder(500, Hashers.bytes())
+        def keys = (0..<1000)
+
+        when:
+        2.times {
+            keys.each {
+                longBuilder.add(1_000_003L * it)
+                intBuilder.add(-7 * it)
+                bytesBuilder.add("Hello $it".toString().bytes)
+            }
+        }
+        def longHash = longBuilder.build()
+        def intHash = intBuilder.build()
+        def bytesHash = bytesBuilder.build()
+
+        then:
+        [longHash, intHash, bytesHash]*.size() == [1000, 1000, 1000]
+        keys.collect { longHash.applyAsInt(1_000_003L * it) } as Set == (0..<1000) as Set
+        keys.collect { intHash.applyAsInt(-7 * it) } as Set == (0..<1000) as Set
+        keys.collect { bytesHash.applyAsInt("Hello $it".toString().bytes) } as Set == (0..<1000) as Set
+
+        and: "byte array keys can be hashed from a slice"
+        bytesHash.applyAsInt("__Hello 42__".bytes, 2, 8) == bytesHash.applyAsInt("Hello 42".bytes)
+    }
+
+    @Unroll
+    void "byte arrays and #order byte buffers with the same content have the same hash"() {
+        def bytes = "Hello, this is a long enough key".bytes
+        def buffer = ByteBuffer.allocateDirect(bytes.length + 4).order(order)
+        buffer.putInt(42).put(bytes).flip().position(4)
+
+        expect:
+        (0..<10).every { seed ->
+            Hashers.byteBuffers().hash(buffer, seed) == Hashers.bytes().hash(bytes, 0, bytes.length, seed)
+        }
+        buffer.position() == 4
+
+        where:
+        order << [ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN]
+    }
+
     void "reasonable error message when can't build hasher"() {
-        def mphbuilder = new MPHBuilder(2, this.&stringHasher)
+        def mphbuilder = new MPHBuilder(2, Hashers.charSequences())
         100.times {
             mphbuilder.add("Hello $it".toString())
         }
@@ -111,20 +250,278 @@ class MinimalPerfectHashTest extends Specification {
         e.message == "Can't build minimal perfect hash function. Try increasing the number of initial buckets."
     }
 
+    void "automatically sized builder chooses the number of buckets from the load factor"() {
+        def mphbuilder = new MPHBuilder(Hashers.charSequences())
+        def words = (0..<2000).collect { "Hello $it".toString() }
+
+        when:
+        words.each { mphbuilder.add(it) }
+        def hashFunc = mphbuilder.build()
+        def stats = mphbuilder.stats()
+
+        then:
+        hashFunc.size() == 2000
+        words.collect { hashFunc.applyAsInt(it) } as Set == (0..<2000) as Set
+        hashFunc.bitsPerKey() == 8
+        stats.keys() == 2000
+        stats.buckets() == 500
+        stats.attempts() == 1
+        stats.maxSeed() > 0
+        stats.seedBitLengths()[0] == 0
+        stats.seedBitLengths().sum() <= 500
+        stats.seedTrials() >= stats.seedBitLengths().sum()
+    }
+
+    void "automatically sized builder retries instead of failing"() {
+        def mphbuilder = new MPHBuilder(Hashers.charSequences()).withLoadFactor(8)
+        def words = (0..<100).collect { "Hello $it".toString() }
+        def file = File.createTempFile("mph", ".bin")
+        file.deleteOnExit()
+
+        when:
+        words.each { mphbuilder.add(it) }
+        def hashFunc = mphbuilder.build()
+        def stats = mphbuilder.stats()
+
+        then:
+        words.collect { hashFunc.applyAsInt(it) } as Set == (0..<100) as Set
+        stats.attempts() > 1
+        stats.buckets() > 13
+
+        when:
+        MPHFile.write(hashFunc, file.toPath())
+        def mapped = MPHFile.map(file.toPath(), Hashers.charSequences())
+
+        then:
+        words.every { mapped.applyAsInt(it) == hashFunc.applyAsInt(it) }
+    }
+
+    void "collects statistics of partitioned builds"() {
+        def mphbuilder = new MPHBuilder(Hashers.charSequences())
+        def words = (0..<2000).collect { "Hello $it".toString() }
+
+        when:
+        words.each { mphbuilder.add(it) }
+        def hashFunc = mphbuilder.build(4)
+
+        then:
+        words.collect { hashFunc.applyAsInt(it) } as Set == (0..<2000) as Set
+        mphbuilder.stats().keys() == 2000
+        mphbuilder.stats().buckets() >= 500
+    }
+
+    void "reasonable error message for invalid load factor"() {
+        when:
+        new MPHBuilder(Hashers.charSequences()).withLoadFactor(0.5)
+
+        then:
+        def e = thrown(IllegalArgumentException)
+        e.message == "Load factor must be at least 1 key per bucket"
+    }
+
+    void "reasonable error message for invalid number of buckets"() {
+        when:
+        builder()
+
+        then:
+        def e = thrown(IllegalArgumentException)
+        e.message == "Number of first level buckets must be positive"
+
+        where:
+        builder << [
+                { new MPHBuilder(0, Hashers.charSequences()) },
+                { new LongMPHBuilder(0, Hashers.longs()) },
+                { new IntMPHBuilder(-1, Hashers.ints()) },
+                { new BytesMPHBuilder(0, Hashers.bytes()) }
+        ]
+    }
+
+    void "can build minimal perfect hashers for a million random primitive keys"() {
+        def random = new Random(42)
+        def longBuilder = new LongMPHBuilder(Hashers.longs())
+        def halfLoadBuilder = new LongMPHBuilder(500_000, Hashers.longs())
+        def intBuilder = new IntMPHBuilder(Hashers.ints()).withCompression(MPHBuilder.Compression.COMPACT)
+        long[] longs = new long[1_000_000]
+        int[] ints = new int[1_000_000]
+        for (int i = 0; i < longs.length; i++) {
+            longs[i] = random.nextLong()
+            ints[i] = i * 0x9E3779B9
+            longBuilder.add(longs[i])
+            halfLoadBuilder.add(longs[i])
+            intBuilder.add(ints[i])
+        }
+        def out = new int[1_000_000]
+
+        when:
+        longBuilder.build().applyAsInt(longs, out)
+
+        then:
+        isPermutation(out)
+        longBuilder.stats().buckets() >= 250_000
+
+        when:
+        halfLoadBuilder.build().applyAsInt(longs, out)
+
+        then:
+        isPermutation(out)
+
+        when:
+        def partitioned = longBuilder.build(8)
+        for (int i = 0; i < longs.length; i++) {
+            out[i] = partitioned.applyAsInt(longs[i])
+        }
+
+        then:
+        isPermutation(out)
+        longBuilder.stats().keys() == 1_000_000
+
+        when:
+        intBuilder.build().applyAsInt(ints, out)
+
+        then:
+        isPermutation(out)
+    }
+
+    @Unroll
+    void "can build partitioned hashers of primitive keys with a fixed number of buckets (#partitions partitions)"() {
+        def random = new Random(7)
+        def longBuilder = new LongMPHBuilder(100_000, Hashers.longs())
+        def intBuilder = new IntMPHBuilder(100_000, Hashers.ints())
+        long[] longs = new long[200_000]
+        int[] ints = new int[200_000]
+        for (int i = 0; i < longs.length; i++) {
+            longs[i] = random.nextLong()
+            ints[i] = i
+            longBuilder.add(longs[i])
+            intBuilder.add(ints[i])
+        }
+        def out = new int[200_000]
+
+        when:
+        def longHash = longBuilder.build(partitions)
+        def intHash = intBuilder.build(partitions)
+
+        then:
+        longBuilder.stats().attempts() == 1
+
+        when:
+        for (int i = 0; i < longs.length; i++) {
+            out[i] = longHash.applyAsInt(longs[i])
+        }
+
+        then:
+        isPermutation(out)
+
+        when:
+        for (int i = 0; i < ints.length; i++) {
+            out[i] = intHash.applyAsInt(ints[i])
+        }
+
+        then:
+        isPermutation(out)
+
+        where:
+        partitions << [1, 8, 64]
+    }
+
+    @Unroll
+    void "can write and map an automatically sized hasher of byte array keys (#partitions partitions)"() {
+        def builder = new BytesMPHBuilder(Hashers.bytes()).withLoadFactor(8)
+        def keys = (0..<2000).collect { "Hello $it".toString().bytes }
+        def file = File.createTempFile("mph", ".bin")
+        file.deleteOnExit()
+
+        when:
+        keys.each { builder.add(it) }
+        def hashFunc = partitions == 1 ? builder.build() : builder.build(partitions)
+        MPHFile.write(hashFunc, file.toPath())
+        def mapped = MPHFile.mapBytes(file.toPath(), Hashers.bytes())
+
+        then:
+        keys.collect { hashFunc.applyAsInt(it) } as Set == (0..<2000) as Set
+        keys.every { mapped.applyAsInt(it) == hashFunc.applyAsInt(it) }
+        mapped.size() == 2000
+
+        where:
+        partitions << [1, 4]
+    }
+
     @CompileStatic
-    private static int stringHasher(String str, int seed) {
-        Random rnd = new Random(seed)
-        int i = 0;
-        for (char c : str.toCharArray()) {
-            i = 37 * i + c + rnd.nextInt()
+    private static boolean isPermutation(int[] slots) {
+        def seen = new BitSet(slots.length)
+        for (int slot : slots) {
+            if (slot < 0 || slot >= slots.length || seen.get(slot)) {
+                return false
+            }
+            seen.set(slot)
+        }
+        return true
+    }
+
+    @Unroll
+    void "batch lookups give the same results as single lookups (#compression seeds)"() {
+        def mphbuilder = new MPHBuilder<String>(Hashers.charSequences()).withCompression(compression)
+        def longBuilder = new LongMPHBuilder(500, Hashers.longs()).withCompression(compression)
+        def intBuilder = new IntMPHBuilder(500, Hashers.ints()).withCompression(compression)
+        def bytesBuilder = new BytesMPHBuilder(500, Hashers.bytes()).withCompression(compression)
+        def keys = (0..<1000)
+        keys.each {
+            mphbuilder.add("Hello $it".toString())
+            longBuilder.add(1_000_003L * it)
+            intBuilder.add(-7 * it)
+            bytesBuilder.add("Hello $it".toString().bytes)
         }
-        return i
+        def hashFunc = mphbuilder.build()
+        def longHash = longBuilder.build()
+        def intHash = intBuilder.build()
+        def bytesHash = bytesBuilder.build()
+        def out = new int[1000]
+
+        when:
+        hashFunc.applyAsInt(keys.collect { "Hello $it".toString() } as String[], out)
+
+        then:
+        out as List == keys.collect { hashFunc.applyAsInt("Hello $it".toString()) }
+
+        when:
+        longHash.applyAsInt(keys.collect { 1_000_003L * it } as long[], out)
+
+        then:
+        out as List == keys.collect { longHash.applyAsInt(1_000_003L * it) }
+
+        when:
+        intHash.applyAsInt(keys.collect { -7 * it } as int[], out)
+
+        then:
+        out as List == keys.collect { intHash.applyAsInt(-7 * it) }
+
+        when:
+        bytesHash.applyAsInt(keys.collect { "Hello $it".toString().bytes } as byte[][], out)
+
+        then:
+        out as List == keys.collect { bytesHash.applyAsInt("Hello $it".toString().bytes) }
+
+        where:
+        compression << [MPHBuilder.Compression.NONE, MPHBuilder.Compression.COMPACT]
+    }
+
+    void "reasonable error message when the batch output is too small"() {
+        def mphbuilder = new MPHBuilder<String>(Hashers.charSequences())
+        mphbuilder.add("hello")
+        mphbuilder.add("world")
+        def hashFunc = mphbuilder.build()
+
+        when:
+        hashFunc.applyAsInt(["hello", "world"] as String[], new int[1])
+
+        then:
+        def e = thrown(IllegalArgumentException)
+        e.message == "Output array is too small: 2 keys but 1 slots"
     }
 
     @CompileStatic
     private static int captainHasher(Captain p, int seed) {
-        Random rnd = new Random(seed)
-        return 37 * p.firstName.hashCode() + p.lastName.hashCode() + rnd.nextInt()
+        return 37 * Hashers.charSequences().hash(p.firstName, seed) + Hashers.charSequences().hash(p.lastName, seed)
     }
 
     @Canonical
@@ -0,0 +1,97 @@
+package me.champeau.rigel.hash
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class MphMapTest extends Specification {
+    def words = (0..<2000).collect { "Hello $it".toString() }
+
+    @Unroll
+    void "can build a map with #compression seeds"() {
+        def builder = MphMap.<String, Integer> builder(Hashers.charSequences()).withCompression(compression)
+
+        when:
+        words.eachWithIndex { word, i -> builder.put(word, i) }
+        def map = builder.build()
+
+        then:
+        map.size() == 2000
+        words.withIndex().every { word, i -> map.get(word) == i }
+
+        where:
+        compression << MPHBuilder.Compression.values()
+    }
+
+    void "can build primitive valued maps"() {
+        def intBuilder = MphToIntMap.<String> builder(Hashers.charSequences())
+        def longBuilder = MphToLongMap.<String> builder(Hashers.charSequences())
+
+        when:
+        words.eachWithIndex { word, i ->
+            intBuilder.put(word, -i)
+            longBuilder.put(word, 1_000_000_000_000L * i)
+        }
+        def intMap = intBuilder.build()
+        def longMap = longBuilder.build()
+
+        then:
+        intMap.size() == 2000
+        longMap.size() == 2000
+        words.withIndex().every { word, i ->
+            intMap.getOrDefault(word, 1) == -i && longMap.getOrDefault(word, -1L) == 1_000_000_000_000L * i
+        }
+    }
+
+    void "last value wins for duplicate keys"() {
+        def builder = MphToIntMap.<String> builder(Hashers.charSequences())
+
+        when:
+        3.times { round -> words.each { builder.put(it, round) } }
+        def map = builder.build()
+
+        then:
+        map.size() == 2000
+        words.every { map.getOrDefault(it, -1) == 2 }
+    }
+
+    void "fingerprints reject most unknown keys"() {
+        def builder = MphMap.<String, String> builder(Hashers.charSequences()).withFingerprints(16)
+        words.each { builder.put(it, it.toUpperCase()) }
+
+        when:
+        def map = builder.build()
+        def falsePositives = (0..<10_000).count { map.mightContain("Unknown $it".toString()) }
+
+        then:
+        words.every { map.get(it) == it.toUpperCase() && map.mightContain(it) }
+        falsePositives < 10
+        map.getOrDefault("Unknown key", "none") == "none"
+        map.bitsPerKey() > 16
+    }
+
+    void "empty maps don't contain any key"() {
+        when:
+        def map = MphMap.<String, String> builder(Hashers.charSequences()).build()
+        def fingerprinted = MphMap.<String, String> builder(Hashers.charSequences()).withFingerprints(8).build()
+        def intMap = MphToIntMap.<String> builder(Hashers.charSequences()).build()
+        def longMap = MphToLongMap.<String> builder(Hashers.charSequences()).build()
+
+        then:
+        map.size() == 0
+        map.get("foo") == null
+        !map.mightContain("foo")
+        fingerprinted.getOrDefault("foo", "none") == "none"
+        !fingerprinted.mightContain("foo")
+        intMap.getOrDefault("foo", -1) == -1
+        longMap.getOrDefault("foo", -1L) == -1L
+    }
+
+    void "reasonable error message for invalid fingerprint size"() {
+        when:
+        MphMap.builder(Hashers.charSequences()).withFingerprints(33)
+
+        then:
+        def e = thrown(IllegalArgumentException)
+        e.message == "Fingerprints must be between 1 and 32 bits"
+    }
+}
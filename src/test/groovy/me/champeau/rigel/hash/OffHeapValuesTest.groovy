@@ -0,0 +1,117 @@
+package me.champeau.rigel.hash
+
+import spock.lang.Shared
+import spock.lang.Specification
+
+import java.nio.ByteBuffer
+import java.nio.ReadOnlyBufferException
+
+class OffHeapValuesTest extends Specification {
+    @Shared
+    List<String> words = (0..<1000).collect { "word $it".toString() }
+
+    @Shared
+    MinimalPerfectHasher<String> hashFunc = hasher(words)
+
+    void "stores fixed width records by slot"() {
+        def values = FixedWidthValues.allocate(hashFunc.size(), 12)
+        def file = File.createTempFile("values", ".bin")
+        file.deleteOnExit()
+
+        when:
+        words.eachWithIndex { word, i ->
+            values.putInt(hashFunc.applyAsInt(word), 0, i).putLong(hashFunc.applyAsInt(word), 4, 1000L * i)
+        }
+        values.write(file.toPath())
+        def mapped = OffHeapValues.map(file.toPath())
+
+        then:
+        mapped instanceof FixedWidthValues
+        mapped.size() == 1000
+        (0..<1000).every { i ->
+            int slot = hashFunc.applyAsInt(words[i])
+            values.getInt(slot, 0) == i && values.getLong(slot, 4) == 1000L * i &&
+                    mapped.getInt(slot, 0) == i && mapped.getLong(slot, 4) == 1000L * i &&
+                    mapped.get(slot) == values.get(slot)
+        }
+
+        when:
+        mapped.get(0).put((byte) 1)
+
+        then:
+        thrown(ReadOnlyBufferException)
+    }
+
+    void "stores variable length values by slot"() {
+        def builder = VariableLengthValues.builder(hashFunc.size())
+        def file = File.createTempFile("values", ".bin")
+        file.deleteOnExit()
+
+        when:
+        words.each { builder.put(hashFunc.applyAsInt(it), it.toUpperCase().bytes) }
+        builder.put(hashFunc.applyAsInt("word 3"), ByteBuffer.wrap("replaced".bytes))
+        def values = builder.build()
+        values.write(file.toPath())
+        def mapped = OffHeapValues.map(file.toPath())
+
+        then:
+        mapped instanceof VariableLengthValues
+        words.every {
+            def expected = it == "word 3" ? "replaced" : it.toUpperCase()
+            int slot = hashFunc.applyAsInt(it)
+            text(values.get(slot)) == expected && text(mapped.get(slot)) == expected && mapped.length(slot) == expected.length()
+        }
+
+        when:
+        def dst = new byte[20]
+        int length = mapped.get(hashFunc.applyAsInt("word 7"), dst, 2)
+
+        then:
+        new String(dst, 2, length) == "WORD 7"
+    }
+
+    void "variable length values can be larger than the initial buffer"() {
+        def builder = VariableLengthValues.builder(10)
+
+        when:
+        10.times { builder.put(it, new byte[100_000]) }
+        def values = builder.build()
+
+        then:
+        (0..<10).every { values.length(it) == 100_000 }
+    }
+
+    void "reasonable error message when mapping an invalid file"() {
+        def file = File.createTempFile("values", ".bin")
+        file.deleteOnExit()
+        file.text = "not a value store"
+
+        when:
+        OffHeapValues.map(file.toPath())
+
+        then:
+        def e = thrown(IOException)
+        e.message == "File ${file.toPath()} is not a value store file"
+    }
+
+    void "reasonable error message when a record has the wrong width"() {
+        when:
+        FixedWidthValues.allocate(10, 8).put(0, new byte[4])
+
+        then:
+        def e = thrown(IllegalArgumentException)
+        e.message == "Value has 4 bytes but records are 8 bytes wide"
+    }
+
+    private static MinimalPerfectHasher<String> hasher(List<String> keys) {
+        def builder = new MPHBuilder<String>(Hashers.charSequences())
+        keys.each { builder.add(it) }
+        builder.build()
+    }
+
+    private static String text(ByteBuffer buffer) {
+        def bytes = new byte[buffer.remaining()]
+        buffer.get(bytes)
+        new String(bytes)
+    }
+}
@@ -0,0 +1,115 @@
+package me.champeau.rigel.hash
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.nio.channels.Channels
+import java.nio.file.Files
+import java.nio.file.Path
+
+class StreamingMPHBuilderTest extends Specification {
+    Path tempDir = Files.createTempDirectory("mph")
+
+    void cleanup() {
+        tempDir.toFile().deleteDir()
+    }
+
+    @Unroll
+    void "can build a minimal perfect hasher from a stream of #count keys with a #budget bytes budget"() {
+        def builder = new StreamingMPHBuilder<String>(Hashers.charSequences())
+                .withMemoryBudget(budget)
+                .withTempDirectory(tempDir)
+                .withCompression(MPHBuilder.Compression.COMPACT)
+        def words = (0..<count).collect { "Hello $it".toString() }
+
+        when:
+        2.times { builder.addAll(words.stream()) }
+        def hashFunc = builder.build()
+
+        then:
+        hashFunc.size() == count
+        words.collect { hashFunc.applyAsInt(it) } as Set == (0..<count) as Set
+        builder.stats().keys() == count
+        builder.stats().discardedSignatures() == count
+
+        and: "temporary files are deleted"
+        Files.list(tempDir).count() == 0
+
+        where:
+        count  | budget
+        0      | 64 << 20
+        2000   | 64 << 20
+        50_000 | 64 << 10
+    }
+
+    void "can build a minimal perfect hasher from a channel"() {
+        def builder = new StreamingBytesMPHBuilder(Hashers.bytes()).withMemoryBudget(64 << 10).withTempDirectory(tempDir)
+        def lines = (0..<20_000).collect { "line $it".toString() } + ["x" * 100_000]
+        def channel = Channels.newChannel(new ByteArrayInputStream((lines.join("\n") + "\n\n").bytes))
+
+        when:
+        builder.addAll(channel, (byte) 10)
+        def hashFunc = builder.build()
+
+        then:
+        hashFunc.size() == lines.size()
+        lines.collect { hashFunc.applyAsInt(it.bytes) } as Set == (0..<lines.size()) as Set
+    }
+
+    @Unroll
+    void "can write and map a streamed minimal perfect hasher (#compression seeds)"() {
+        def builder = new StreamingMPHBuilder<String>(Hashers.charSequences()).withCompression(compression)
+        def bytesBuilder = new StreamingBytesMPHBuilder(Hashers.bytes()).withCompression(compression)
+        def words = (0..<30_000).collect { "Hello $it".toString() }
+        def file = tempDir.resolve("mph.bin")
+        def bytesFile = tempDir.resolve("bytes.bin")
+
+        when:
+        words.each {
+            builder.add(it)
+            bytesBuilder.add(it.bytes)
+        }
+        def hashFunc = builder.build()
+        def bytesHashFunc = bytesBuilder.build()
+        MPHFile.write(hashFunc, file)
+        MPHFile.write(bytesHashFunc, bytesFile)
+        def mapped = MPHFile.map(file, Hashers.charSequences())
+        def bytesMapped = MPHFile.mapBytes(bytesFile, Hashers.bytes())
+
+        then:
+        mapped.size() == 30_000
+        mapped.bitsPerKey() == hashFunc.bitsPerKey()
+        words.every { mapped.applyAsInt(it) == hashFunc.applyAsInt(it) }
+        bytesMapped.size() == 30_000
+        words.every { bytesMapped.applyAsInt(it.bytes) == bytesHashFunc.applyAsInt(it.bytes) }
+
+        where:
+        compression << MPHBuilder.Compression.values()
+    }
+
+    void "reports distinct keys with colliding signatures as discarded"() {
+        def hasher = { String key, int seed -> Hashers.charSequences().hash(key.substring(0, 1), seed) } as MPHBuilder.RandomizedHasher<String>
+        def builder = new StreamingMPHBuilder<String>(hasher)
+
+        when:
+        ["apple", "avocado", "banana", "blueberry", "cherry"].each { builder.add(it) }
+        def hashFunc = builder.build()
+
+        then:
+        hashFunc.size() == 3
+        builder.stats().keys() == 3
+        builder.stats().discardedSignatures() == 2
+    }
+
+    void "reasonable error message when changing the memory budget after adding keys"() {
+        def builder = new StreamingMPHBuilder<String>(Hashers.charSequences())
+        builder.add("Hello")
+
+        when:
+        builder.withMemoryBudget(1 << 20)
+
+        then:
+        def e = thrown(IllegalStateException)
+        e.message == "Can't change the sort settings after keys were added"
+    }
+}
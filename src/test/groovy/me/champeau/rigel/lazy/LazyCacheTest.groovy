@@ -0,0 +1,141 @@
+package me.champeau.rigel.lazy
+
+import spock.lang.Specification
+import spock.util.concurrent.PollingConditions
+
+import java.util.concurrent.Callable
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.Executors
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.function.Function
+
+class LazyCacheTest extends Specification {
+    def "loader is called once per key"() {
+        def loader = Mock(Function)
+        def cache = LazyCache.of(10, loader)
+
+        when:
+        def values = [cache.get('a'), cache.get('b'), cache.get('a'), cache.lazy('b').get()]
+
+        then:
+        1 * loader.apply('a') >> 'A'
+        1 * loader.apply('b') >> 'B'
+        values == ['A', 'B', 'A', 'B']
+        cache.size() == 2
+        cache.stats().hits() == 2
+        cache.stats().misses() == 2
+    }
+
+    def "loader is called once per key by concurrent threads"() {
+        def calls = new AtomicInteger()
+        def cache = LazyCache.of(100) { key ->
+            calls.incrementAndGet()
+            Thread.sleep(50)
+            key * 2
+        }
+        def executor = Executors.newFixedThreadPool(20)
+
+        when:
+        def values = (0..<200).collect { i -> executor.submit({ cache.get(i % 10) } as Callable) }*.get()
+
+        then:
+        calls.get() == 10
+        values == (0..<200).collect { 2 * (it % 10) }
+
+        cleanup:
+        executor.shutdown()
+    }
+
+    def "evicts keys which were not used recently"() {
+        def cache = LazyCache.of(3) { it.toUpperCase() }
+
+        when:
+        ['a', 'b', 'c'].each { cache.get(it) }
+        cache.get('a')
+        cache.get('d')
+
+        then:
+        cache.size() == 3
+        cache.stats().evictions() == 1
+
+        when: "a, being recently used, is kept"
+        def stats = cache.stats()
+        cache.get('a')
+
+        then:
+        cache.stats().hits() == stats.hits() + 1
+    }
+
+    def "failed loads are retried"() {
+        def loader = Mock(Function)
+        def cache = LazyCache.of(10, loader)
+
+        when:
+        cache.get('a')
+
+        then:
+        1 * loader.apply('a') >> { throw new IllegalStateException("boom") }
+        thrown(IllegalStateException)
+        cache.size() == 0
+        cache.stats().loadFailures() == 1
+
+        when:
+        def value = cache.get('a')
+
+        then:
+        1 * loader.apply('a') >> 'A'
+        value == 'A'
+    }
+
+    def "threads waiting for a failed load get its failure"() {
+        def calls = new AtomicInteger()
+        def release = new CountDownLatch(1)
+        def cache = LazyCache.of(10) { key ->
+            calls.incrementAndGet()
+            release.await()
+            throw new IllegalStateException("boom")
+        }
+        def executor = Executors.newFixedThreadPool(5)
+
+        when:
+        def loading = executor.submit({ cache.get('a') } as Callable)
+        new PollingConditions(timeout: 10).eventually {
+            assert calls.get() == 1
+        }
+        def waiting = (0..<4).collect { executor.submit({ cache.get('a') } as Callable) }
+        new PollingConditions(timeout: 10).eventually {
+            assert cache.stats().hits() == 4
+        }
+        release.countDown()
+        def failures = ([loading] + waiting).collect {
+            try {
+                it.get()
+            } catch (ExecutionException e) {
+                e.cause
+            }
+        }
+
+        then: "the loader isn't called again by the waiting threads"
+        calls.get() == 1
+        failures[0] instanceof IllegalStateException
+        failures[1..4].every { it instanceof CachedFailureException && it.cause.is(failures[0]) }
+        cache.size() == 0
+
+        cleanup:
+        executor.shutdown()
+    }
+
+    def "can invalidate keys"() {
+        def loader = Mock(Function)
+        def cache = LazyCache.of(10, loader)
+
+        when:
+        cache.get('a')
+        cache.invalidate('a')
+        cache.get('a')
+
+        then:
+        2 * loader.apply('a') >> 'A'
+    }
+}
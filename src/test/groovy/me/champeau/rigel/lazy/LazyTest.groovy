@@ -1,12 +1,21 @@
 package me.champeau.rigel.lazy
 
 import me.champeau.rigel.fixtures.Fibo
+import me.champeau.rigel.lazy.AsyncLazy
 import me.champeau.rigel.lazy.Lazy
 import spock.lang.Specification
 import spock.lang.Unroll
+import spock.util.concurrent.PollingConditions
 
+import java.time.Duration
+import java.util.concurrent.Callable
+import java.util.concurrent.CompletionException
+import java.util.concurrent.CountDownLatch
 import java.util.concurrent.Executors
+import java.util.concurrent.ForkJoinPool
 import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.function.Function
 import java.util.function.Supplier
 
 class LazyTest extends Specification {
@@ -55,6 +64,10 @@ class LazyTest extends Specification {
         { s -> Lazy.unsafe().of(s).map { 2 * it } }  | 246
         { s -> Lazy.locking().of(s) }                | 123
         { s -> Lazy.locking().of(s).map { 2 * it } } | 246
+        { s -> Lazy.lockFree().of(s) }               | 123
+        { s -> Lazy.lockFree().of(s).map { 2 * it } } | 246
+        { s -> Lazy.async(ForkJoinPool.commonPool()).of(s) } | 123
+        { s -> Lazy.async(ForkJoinPool.commonPool()).of(s).map { 2 * it } } | 246
     }
 
     @Unroll
@@ -79,6 +92,8 @@ class LazyTest extends Specification {
         factoryName     | factory
         'locking'       | Lazy.locking()
         'synchronized'  | Lazy.synchronizing()
+        'lock free'     | Lazy.lockFree()
+        'async'         | Lazy.async(ForkJoinPool.commonPool())
     }
 
     @Unroll
@@ -103,6 +118,561 @@ class LazyTest extends Specification {
         factoryName     | factory
         'locking'       | Lazy.locking()
         'synchronized'  | Lazy.synchronizing()
+        'lock free'     | Lazy.lockFree()
+    }
+
+    def "lock free lazy parks threads during a slow initialization"() {
+        def calls = new AtomicInteger()
+        def lazy = Lazy.lockFree().of {
+            calls.incrementAndGet()
+            Thread.sleep(200)
+            'hello'
+        }
+        def executors = Executors.newFixedThreadPool(20)
+
+        when:
+        def results = (0..<50).collect { executors.submit({ lazy.get() } as Callable) }*.get()
+        executors.shutdown()
+
+        then:
+        calls.get() == 1
+        results.every { it == 'hello' }
+    }
+
+    def "lock free lazy retries after the supplier failed"() {
+        def supplier = Mock(Supplier)
+        def lazy = Lazy.lockFree().of(supplier)
+
+        when:
+        lazy.get()
+
+        then:
+        1 * supplier.get() >> { throw new IllegalStateException("boom") }
+        thrown(IllegalStateException)
+
+        when:
+        def value = lazy.get()
+
+        then:
+        1 * supplier.get() >> 'hello'
+        value == 'hello'
+    }
+
+    def "lock free lazy detects recursive initialization"() {
+        Lazy<String> lazy
+        lazy = Lazy.lockFree().of { lazy.get() }
+
+        when:
+        lazy.get()
+
+        then:
+        def e = thrown(IllegalStateException)
+        e.message == "Recursive initialization of a lazy value"
+    }
+
+    def "async lazy computes its value on the executor without blocking"() {
+        def executor = Executors.newSingleThreadExecutor()
+        def latch = new CountDownLatch(1)
+        def threads = []
+        def lazy = Lazy.async(executor).of {
+            threads << Thread.currentThread()
+            latch.await()
+            'hello'
+        }
+
+        when: "mapping doesn't start the computation"
+        def mapped = lazy.map { it.toUpperCase() }
+
+        then:
+        threads.empty
+
+        when:
+        def stage = mapped.toCompletionStage()
+        latch.countDown()
+
+        then:
+        stage.toCompletableFuture().get(1, TimeUnit.MINUTES) == 'HELLO'
+        lazy.isDone()
+        threads.size() == 1
+        threads[0] != Thread.currentThread()
+
+        cleanup:
+        executor.shutdown()
+    }
+
+    def "eager async lazy starts computing immediately"() {
+        def latch = new CountDownLatch(1)
+
+        when:
+        def lazy = Lazy.async(ForkJoinPool.commonPool()).eager {
+            latch.countDown()
+            'hello'
+        }
+
+        then:
+        latch.await(1, TimeUnit.MINUTES)
+        lazy.get() == 'hello'
+    }
+
+    def "async lazy rethrows the failure of the supplier"() {
+        def lazy = Lazy.async(ForkJoinPool.commonPool()).of { throw new IllegalStateException("boom") }
+
+        when:
+        lazy.get()
+
+        then:
+        def e = thrown(IllegalStateException)
+        e.message == "boom"
+
+        when:
+        lazy.map { it.toString() }.toCompletionStage().toCompletableFuture().join()
+
+        then:
+        e = thrown(CompletionException)
+        e.cause instanceof IllegalStateException
+    }
+
+    def "lazy wrappers derived from an async lazy are asynchronous"() {
+        def executor = Executors.newSingleThreadExecutor()
+        def latch = new CountDownLatch(1)
+        def calls = new AtomicInteger()
+        def source = Lazy.async(executor).of {
+            calls.incrementAndGet()
+            latch.await()
+            21
+        }
+
+        when:
+        def flatMapped = source.flatMap { v -> Lazy.async(executor).of { v * 2 } }
+        def zipped = source.zip(Lazy.unsafe().of { 'x' }) { n, s -> s * n }
+
+        then: "deriving doesn't start the computation"
+        flatMapped instanceof AsyncLazy
+        zipped instanceof AsyncLazy
+        calls.get() == 0
+
+        when:
+        def stages = [flatMapped.toCompletionStage(), zipped.toCompletionStage()]
+        latch.countDown()
+
+        then:
+        stages*.toCompletableFuture()*.get(1, TimeUnit.MINUTES) == [42, 'x' * 21]
+        calls.get() == 1
+
+        cleanup:
+        executor.shutdown()
+    }
+
+    def "refreshing lazy returns the stale value while refreshing in the background"() {
+        def executor = Executors.newSingleThreadExecutor()
+        def version = new AtomicInteger()
+        def latch = new CountDownLatch(1)
+        def lazy = Lazy.refreshing(Duration.ofMillis(50), executor).of {
+            if (version.get() > 0) {
+                latch.await()
+            }
+            version.incrementAndGet()
+        }
+        def mapped = lazy.map { "version $it" }
+
+        expect:
+        lazy.get() == 1
+        mapped.get() == 'version 1'
+
+        when:
+        Thread.sleep(100)
+
+        then: "the refresh is blocked, readers get the stale value"
+        lazy.get() == 1
+        mapped.get() == 'version 1'
+
+        when:
+        latch.countDown()
+
+        then:
+        new PollingConditions(timeout: 10).eventually {
+            assert mapped.get() == 'version 2'
+        }
+
+        cleanup:
+        executor.shutdown()
+    }
+
+    def "refreshing lazy can be invalidated"() {
+        def supplier = Mock(Supplier)
+        def lazy = Lazy.refreshing(Duration.ofDays(1), { it.run() }).of(supplier)
+
+        when:
+        def value = lazy.get()
+        lazy.get()
+
+        then:
+        1 * supplier.get() >> 'hello'
+        value == 'hello'
+
+        when:
+        lazy.invalidate()
+        value = lazy.get()
+
+        then: "the stale value is returned while refreshing"
+        1 * supplier.get() >> 'bonjour'
+        value == 'hello'
+        lazy.get() == 'bonjour'
+    }
+
+    def "lazy wrappers derived from a refreshing lazy follow its refreshes"() {
+        def version = new AtomicInteger()
+        def lazy = Lazy.refreshing(Duration.ofDays(1), { it.run() }).of { version.incrementAndGet() }
+        def mapped = lazy.map { 10 * it }
+        def chained = mapped.map { it + 1 }
+        def flatMapped = mapped.flatMap { v -> Lazy.unsafe().of { v + 2 } }
+        def zipped = lazy.zip(Lazy.unsafe().of { 'x' }) { n, s -> s * n }
+        def derived = { [mapped.get(), chained.get(), flatMapped.get(), zipped.get()] }
+
+        expect:
+        derived() == [10, 11, 12, 'x']
+
+        when: "the refresh runs on the first read after invalidation"
+        lazy.invalidate()
+        lazy.get()
+
+        then:
+        derived() == [20, 21, 22, 'xx']
+    }
+
+    def "failed refresh keeps the value stale and records the failure"() {
+        def supplier = Mock(Supplier)
+        def lazy = Lazy.refreshing(Duration.ofDays(1), { it.run() }).of(supplier)
+
+        when:
+        lazy.get()
+
+        then:
+        1 * supplier.get() >> 'hello'
+
+        when:
+        lazy.invalidate()
+        def value = lazy.get()
+
+        then: "the exception isn't rethrown by the executor"
+        1 * supplier.get() >> { throw new IllegalStateException("boom") }
+        value == 'hello'
+        lazy.refreshFailure() instanceof IllegalStateException
+
+        when: "the value is still stale, so the next read refreshes it again"
+        value = lazy.get()
+
+        then:
+        1 * supplier.get() >> 'bonjour'
+        value == 'hello'
+        lazy.get() == 'bonjour'
+        lazy.refreshFailure() == null
+    }
+
+    @Unroll
+    def "derived lazy wrappers keep the thread safety of their source (#factoryName)"() {
+        def source = factory.of { 21 }
+
+        expect:
+        source.map { 2 * it }.class == source.class
+        source.flatMap { v -> Lazy.unsafe().of { v * 3 } }.class == source.class
+        source.zip(Lazy.unsafe().of { 2 }) { a, b -> a * b }.class == source.class
+
+        where:
+        factoryName    | factory
+        'unsafe'       | Lazy.unsafe()
+        'locking'      | Lazy.locking()
+        'synchronized' | Lazy.synchronizing()
+        'lock free'    | Lazy.lockFree()
+    }
+
+    @Unroll
+    def "can combine lazy values (#factoryName)"() {
+        def supplier = Mock(Supplier)
+        def source = factory.of(supplier)
+
+        when:
+        def mapped = source.map { it + 1 }.map { it * 2 }.map { "value $it".toString() }
+        def flatMapped = source.flatMap { v -> Lazy.unsafe().of { v * 3 } }
+        def zipped = source.zip(Lazy.unsafe().of { 'hello' }) { n, s -> s * n }
+
+        then:
+        0 * supplier._
+
+        when:
+        def values = [mapped.get(), flatMapped.get(), zipped.get()]
+
+        then:
+        1 * supplier.get() >> 2
+        values == ['value 6', 6, 'hellohello']
+
+        when: "values are cached"
+        values = [mapped.get(), flatMapped.get(), zipped.get()]
+
+        then:
+        0 * supplier._
+        values == ['value 6', 6, 'hellohello']
+
+        where:
+        factoryName    | factory
+        'unsafe'       | Lazy.unsafe()
+        'locking'      | Lazy.locking()
+        'synchronized' | Lazy.synchronizing()
+        'lock free'    | Lazy.lockFree()
+    }
+
+    def "mapping a computed lazy doesn't compute it again"() {
+        def mapper = Mock(Function)
+        def source = Lazy.locking().of { 2 }
+        def first = source.map(mapper)
+
+        when:
+        first.get()
+        def second = first.map { it * 10 }
+
+        then:
+        1 * mapper.apply(2) >> 4
+
+        when:
+        def value = second.get()
+
+        then:
+        0 * mapper._
+        value == 40
+    }
+
+    def "instrumented lazy reports its initialization"() {
+        def listener = Mock(LazyListener)
+        def latch = new CountDownLatch(1)
+        def lazy = Lazy.lockFree().instrumented(listener).of {
+            latch.await()
+            'hello'
+        }
+        def executor = Executors.newFixedThreadPool(4)
+
+        when: "the value is released once all the threads are reading it"
+        def futures = (0..<4).collect { executor.submit({ lazy.get() } as Callable) }
+        new PollingConditions(timeout: 10).eventually {
+            assert lazy.readers == 4
+        }
+        latch.countDown()
+        def values = futures*.get()
+        lazy.get()
+
+        then:
+        values == ['hello'] * 4
+        1 * listener.initialized({ it >= 0 }, 3)
+        3 * listener.waited({ it >= 0 })
+        0 * listener._
+
+        cleanup:
+        executor.shutdown()
+    }
+
+    def "instrumented lazy calls the listener after releasing the lock"() {
+        def listener = Mock(LazyListener)
+        def lazy = Lazy.synchronizing().instrumented(listener).of { 'hello' }
+        def holdsLock = new AtomicInteger()
+
+        when:
+        lazy.get()
+
+        then:
+        1 * listener.initialized(_, 0) >> { holdsLock.set(Thread.holdsLock(lazy.delegate.lock) ? 1 : 2) }
+        holdsLock.get() == 2
+    }
+
+    def "instrumented lazy reports an initialization triggered by a derived lazy"() {
+        def listener = Mock(LazyListener)
+        def lazy = Lazy.locking().instrumented(listener).of { 42 }
+
+        when:
+        def mapped = lazy.map { it + 1 }.get()
+        def zipped = lazy.zip(Lazy.unsafe().of { 2 }) { a, b -> a * b }.get()
+
+        then:
+        mapped == 43
+        zipped == 84
+        1 * listener.initialized(_, 0)
+        0 * listener._
+    }
+
+    def "instrumented lazy reports failures"() {
+        def listener = Mock(LazyListener)
+        def lazy = Lazy.locking().instrumented(listener).of { throw new IllegalStateException("boom") }
+
+        when:
+        lazy.get()
+
+        then:
+        thrown(IllegalStateException)
+        1 * listener.failed({ it instanceof IllegalStateException }, _, 0)
+    }
+
+    def "flight recorder listener can be used without a recording"() {
+        def lazy = Lazy.synchronizing().instrumented(LazyListener.flightRecorder()).of { 'hello' }
+
+        expect:
+        lazy.get() == 'hello'
+        lazy.map { it.toUpperCase() }.get() == 'HELLO'
+    }
+
+    def "failures are retried on each access by default"() {
+        def supplier = Mock(Supplier)
+        def lazy = Lazy.locking().withFailurePolicy(FailurePolicy.retry()).of(supplier)
+
+        when:
+        3.times {
+            try {
+                lazy.get()
+            } catch (IllegalStateException ignored) {
+            }
+        }
+
+        then:
+        3 * supplier.get() >> { throw new IllegalStateException("boom") }
+    }
+
+    def "failures can be cached"() {
+        def supplier = Mock(Supplier)
+        def lazy = Lazy.lockFree().withFailurePolicy(FailurePolicy.cacheFor(Duration.ofMillis(200))).of(supplier)
+        def failure = new IllegalStateException("boom")
+
+        when:
+        def failures = (0..<3).collect {
+            try {
+                lazy.get()
+            } catch (RuntimeException e) {
+                e
+            }
+        }
+
+        then: "other readers get their own exception, caused by the cached one"
+        1 * supplier.get() >> { throw failure }
+        failures[0] == failure
+        failures[1..2].every { it instanceof CachedFailureException && it.cause == failure }
+        !failures[1].is(failures[2])
+
+        when:
+        Thread.sleep(300)
+        def value = lazy.get()
+
+        then:
+        1 * supplier.get() >> 'hello'
+        value == 'hello'
+    }
+
+    def "cached failures are rethrown without waiting for the lock"() {
+        def supplier = Mock(Supplier)
+        def lazy = Lazy.synchronizing().withFailurePolicy(FailurePolicy.cacheFor(Duration.ofMinutes(1))).of(supplier)
+        def locked = new CountDownLatch(1)
+        def release = new CountDownLatch(1)
+        def executor = Executors.newSingleThreadExecutor()
+
+        when:
+        try {
+            lazy.get()
+        } catch (IllegalStateException ignored) {
+        }
+        executor.submit {
+            synchronized (lazy.delegate.lock) {
+                locked.countDown()
+                release.await()
+            }
+        }
+        locked.await()
+        lazy.get()
+
+        then:
+        1 * supplier.get() >> { throw new IllegalStateException("boom") }
+        def e = thrown(CachedFailureException)
+        e.cause.message == "boom"
+
+        cleanup:
+        release.countDown()
+        executor.shutdown()
+    }
+
+    def "refreshing lazy wrappers keep their stale value while a failure is cached"() {
+        def supplier = Mock(Supplier)
+        def lazy = Lazy.refreshing(Duration.ofDays(1), { it.run() })
+                .withFailurePolicy(FailurePolicy.cacheFor(Duration.ofMinutes(1)))
+                .of(supplier)
+
+        when:
+        def first = lazy.get()
+        lazy.invalidate()
+        def values = (0..<3).collect { lazy.get() }
+
+        then: "the failed refresh is cached, so the next reads don't refresh"
+        2 * supplier.get() >> 'hello' >> { throw new IllegalStateException("boom") }
+        lazy instanceof RefreshableLazy
+        first == 'hello'
+        values == ['hello', 'hello', 'hello']
+        lazy.refreshFailure() instanceof CachedFailureException
+        lazy.refreshFailure().cause.message == "boom"
+    }
+
+    def "failure caching duration grows exponentially"() {
+        def policy = FailurePolicy.retryWithBackoff(Duration.ofMillis(100), Duration.ofSeconds(1))
+
+        expect:
+        (1..6).collect { policy.delay(it) } == [100, 200, 400, 800, 1000, 1000].collect { it * 1_000_000L }
+        policy.delay(Integer.MAX_VALUE) == 1_000_000_000L
+    }
+
+    def "backoff restarts after a success"() {
+        def supplier = Mock(Supplier)
+        def lazy = Lazy.refreshing(Duration.ofDays(1), { it.run() })
+                .withFailurePolicy(FailurePolicy.retryWithBackoff(Duration.ofMillis(200), Duration.ofMinutes(1)))
+                .of(supplier)
+
+        when: "a refresh fails, then succeeds once its failure expired"
+        lazy.get()
+        lazy.invalidate()
+        lazy.get()
+        Thread.sleep(300)
+        lazy.get()
+        lazy.invalidate()
+        lazy.get()
+        Thread.sleep(300)
+        def value = lazy.get()
+
+        then: "the next failure is cached for the initial delay again, not twice as long"
+        5 * supplier.get() >> 'hello' >> { throw new IllegalStateException("boom") } >> 'bonjour' >> { throw new IllegalStateException("boom") } >> 'hallo'
+        value == 'bonjour'
+        lazy.get() == 'hallo'
+    }
+
+    def "can fall back to a default value"() {
+        def supplier = Mock(Supplier)
+        def lazy = Lazy.synchronizing().withFailurePolicy(FailurePolicy.fallback { e -> e.message }).of(supplier)
+
+        when:
+        def values = [lazy.get(), lazy.get()]
+
+        then:
+        1 * supplier.get() >> { throw new IllegalStateException("boom") }
+        values == ['boom', 'boom']
+    }
+
+    @Unroll
+    def "can fall back to a typed default value (#factoryName)"() {
+        def supplier = Mock(Supplier)
+        def lazy = factory.of(supplier) { Throwable e -> e.message.length() }
+
+        when:
+        def values = [lazy.get(), lazy.get()]
+
+        then:
+        1 * supplier.get() >> { throw new IllegalStateException("boom") }
+        values == [4, 4]
+
+        where:
+        factoryName  | factory
+        'locking'    | Lazy.locking()
+        'refreshing' | Lazy.refreshing(Duration.ofDays(1), { it.run() })
+        'async'      | Lazy.async({ it.run() })
     }
 
     def "can defer initialization using Lazy"() {
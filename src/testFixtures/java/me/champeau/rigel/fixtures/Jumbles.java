@@ -15,23 +15,20 @@
  */
 package me.champeau.rigel.fixtures;
 
-import me.champeau.rigel.hash.MPHBuilder;
-import me.champeau.rigel.hash.MinimalPerfectHasher;
+import me.champeau.rigel.hash.Hashers;
+import me.champeau.rigel.hash.MphMap;
 
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.util.Arrays;
 import java.util.Optional;
-import java.util.Random;
 import java.util.function.Consumer;
 
 public class Jumbles {
-    private final MinimalPerfectHasher<String> hashFunction;
-    private final String[] index;
+    private final MphMap<String, String> index;
 
-    private Jumbles(MinimalPerfectHasher<String> hashFunction, String[] index) {
-        this.hashFunction = hashFunction;
+    private Jumbles(MphMap<String, String> index) {
         this.index = index;
     }
 
@@ -41,37 +38,23 @@ public static Jumbles of() throws IOException {
 
     public static Jumbles of(String dictionary) throws IOException {
         File dic = new File(dictionary);
-        MPHBuilder<String> builder = new MPHBuilder<>(50000, Jumbles::hash);
-        forEachWord(dic, word -> builder.add(sort(word)));
-        MinimalPerfectHasher<String> hashFunction = builder.build();
-        // build the index
-        String[] index = new String[hashFunction.size()];
-        forEachWord(dic, word -> index[hashFunction.applyAsInt(sort(word))] = word);
-        return new Jumbles(hashFunction, index);
+        MphMap.Builder<String, String> builder = MphMap.<String, String>builder(Hashers.charSequences())
+                .withFingerprints(8);
+        forEachWord(dic, word -> builder.put(sort(word), word));
+        return new Jumbles(builder.build());
     }
 
     public Optional<String> guess(String word) {
         String query = sort(word);
-        int hash = hashFunction.applyAsInt(query);
-        String answer = this.index[hash];
-        // Because we're using a minimal perfect hash, we will
-        // always return a hash within the 0..index size range
-        // so we need to validate that it's a valid answer
-        if (query.equals(sort(answer))) {
+        String answer = index.get(query);
+        // Fingerprints reject most unknown words, but not all of
+        // them, so we still need to validate that it's a valid answer
+        if (answer != null && query.equals(sort(answer))) {
             return Optional.of(answer);
         }
         return Optional.empty();
     }
 
-    private static int hash(String str, int seed) {
-        Random rnd = new Random(seed);
-        int i = 0;
-        for (char c : str.toCharArray()) {
-            i = 37 * i + c + rnd.nextInt();
-        }
-        return i;
-    }
-
     public static String sort(String str) {
         char[] chars = str.toCharArray();
         Arrays.sort(chars);